@@ -0,0 +1,45 @@
+package org.example.adoptionpostservice.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * In-process caches of adoption post service.
+ * Both caches are bounded in size and entries expire after a TTL;
+ * statistics are recorded so hits and misses are published as "cache.gets" metrics.
+ */
+@Configuration
+public class CacheConfig {
+
+    /** Cache of AdoptionPostDetailDto by post ID */
+    public static final String POST_DETAILS_CACHE = "postDetails";
+
+    /** Cache of the first pages of search results, by normalized search */
+    public static final String SEARCH_PAGES_CACHE = "searchPages";
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${app.cache.post-details.max-size}") long detailsMaxSize,
+            @Value("${app.cache.post-details.ttl}") Duration detailsTtl,
+            @Value("${app.cache.search-pages.max-size}") long searchMaxSize,
+            @Value("${app.cache.search-pages.ttl}") Duration searchTtl) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache(POST_DETAILS_CACHE, Caffeine.newBuilder()
+                .maximumSize(detailsMaxSize)
+                .expireAfterWrite(detailsTtl)
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(SEARCH_PAGES_CACHE, Caffeine.newBuilder()
+                .maximumSize(searchMaxSize)
+                .expireAfterWrite(searchTtl)
+                .recordStats()
+                .build());
+        return cacheManager;
+    }
+}
@@ -3,14 +3,18 @@ package org.example.adoptionpostservice.config;
 
 import org.example.adoptionpostservice.model.AdoptionPost;
 import org.example.adoptionpostservice.repository.AdoptionPostRepository;
+import org.example.adoptionpostservice.repository.PostChangeRepository;
+import org.example.adoptionpostservice.service.GazetteerService;
+import org.example.adoptionpostservice.service.ImageProcessingService;
+import org.example.adoptionpostservice.service.ImageStorageService;
+import org.example.adoptionpostservice.service.LegacyImageMigration;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StreamUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
-import java.util.Base64;
 
 /**
  * If Repository is empty initialize with 3 entries
@@ -20,14 +24,31 @@ public class DataInitializer implements CommandLineRunner {
 
     private final AdoptionPostRepository adoptionPostRepository;
 
-    DataInitializer(AdoptionPostRepository adoptionPostRepository) {
+    private final ImageStorageService imageStorageService;
+
+    private final ImageProcessingService imageProcessingService;
+
+    private final GazetteerService gazetteerService;
+
+    private final PostChangeRepository postChangeRepository;
+
+    private final LegacyImageMigration legacyImageMigration;
+
+    DataInitializer(AdoptionPostRepository adoptionPostRepository, ImageStorageService imageStorageService,
+                    ImageProcessingService imageProcessingService, GazetteerService gazetteerService,
+                    PostChangeRepository postChangeRepository, LegacyImageMigration legacyImageMigration) {
         this.adoptionPostRepository = adoptionPostRepository;
+        this.imageStorageService = imageStorageService;
+        this.imageProcessingService = imageProcessingService;
+        this.gazetteerService = gazetteerService;
+        this.postChangeRepository = postChangeRepository;
+        this.legacyImageMigration = legacyImageMigration;
     }
 
     @Override
     public void run(String... args) {
         if (adoptionPostRepository.count() == 0) {
-            adoptionPostRepository.save(
+            save(
                     AdoptionPost.builder()
                             .name("Zuko")
                             .description("Gatto indemoniato, cerca famiglia amorevole.")
@@ -41,11 +62,11 @@ public class DataInitializer implements CommandLineRunner {
                             .ownerId(1L)
                             .active(true)
                             .adopterId(null)
-                            .imageBase64(encodeImage("Zuko.jpg"))
+                            .imageKey(storeImage("Zuko.jpg"))
                             .build()
             );
 
-            adoptionPostRepository.save(
+            save(
                     AdoptionPost.builder()
                             .name("Fido")
                             .description("Cane Labrador Retriever molto dolce e giocoso.")
@@ -59,11 +80,11 @@ public class DataInitializer implements CommandLineRunner {
                             .ownerId(1L)
                             .active(true)
                             .adopterId(null)
-                            .imageBase64(encodeImage("Fido.jpg"))
+                            .imageKey(storeImage("Fido.jpg"))
                             .build()
             );
 
-            adoptionPostRepository.save(
+            save(
                     AdoptionPost.builder()
                             .name("Micia")
                             .description("Gatto Persiano tranquillo e affettuoso.")
@@ -77,11 +98,11 @@ public class DataInitializer implements CommandLineRunner {
                             .ownerId(2L)
                             .active(true)
                             .adopterId(null)
-                            .imageBase64(encodeImage("Micia.jpg"))
+                            .imageKey(storeImage("Micia.jpg"))
                             .build()
             );
 
-            adoptionPostRepository.save(
+            save(
                     AdoptionPost.builder()
                             .name("Piuma")
                             .description("Pappagallo chiacchierone e intelligente.")
@@ -95,11 +116,11 @@ public class DataInitializer implements CommandLineRunner {
                             .ownerId(2L)
                             .active(true)
                             .adopterId(null)
-                            .imageBase64(encodeImage("Piuma.jpg"))
+                            .imageKey(storeImage("Piuma.jpg"))
                             .build()
             );
 
-            adoptionPostRepository.save(
+            save(
                     AdoptionPost.builder()
                             .name("Shelly")
                             .description("Testuggine di Hermann sana e longeva.")
@@ -113,11 +134,11 @@ public class DataInitializer implements CommandLineRunner {
                             .ownerId(2L)
                             .active(true)
                             .adopterId(null)
-                            .imageBase64(encodeImage("Shelly.jpg"))
+                            .imageKey(storeImage("Shelly.jpg"))
                             .build()
             );
 
-            adoptionPostRepository.save(
+            save(
                     AdoptionPost.builder()
                             .name("Nemo")
                             .description("Pesce Rosso vivace e colorato.")
@@ -131,11 +152,11 @@ public class DataInitializer implements CommandLineRunner {
                             .ownerId(2L)
                             .active(true)
                             .adopterId(null)
-                            .imageBase64(encodeImage("Nemo.jpg"))
+                            .imageKey(storeImage("Nemo.jpg"))
                             .build()
             );
 
-            adoptionPostRepository.save(
+            save(
                     AdoptionPost.builder()
                             .name("Lucky")
                             .description("Cane Meticcio affettuoso e fedele.")
@@ -149,11 +170,11 @@ public class DataInitializer implements CommandLineRunner {
                             .ownerId(2L)
                             .active(true)
                             .adopterId(null)
-                            .imageBase64(encodeImage("Lucky.jpg"))
+                            .imageKey(storeImage("Lucky.jpg"))
                             .build()
             );
 
-            adoptionPostRepository.save(
+            save(
                     AdoptionPost.builder()
                             .name("Luna")
                             .description("Gatto Maine Coon con pelo folto e morbido.")
@@ -167,11 +188,11 @@ public class DataInitializer implements CommandLineRunner {
                             .ownerId(2L)
                             .active(true)
                             .adopterId(null)
-                            .imageBase64(encodeImage("Luna.jpg"))
+                            .imageKey(storeImage("Luna.jpg"))
                             .build()
             );
 
-            adoptionPostRepository.save(
+            save(
                     AdoptionPost.builder()
                             .name("Coco")
                             .description("Cocorita vivace e socievole.")
@@ -185,11 +206,11 @@ public class DataInitializer implements CommandLineRunner {
                             .ownerId(3L)
                             .active(true)
                             .adopterId(null)
-                            .imageBase64(encodeImage("Coco.jpg"))
+                            .imageKey(storeImage("Coco.jpg"))
                             .build()
             );
 
-            adoptionPostRepository.save(
+            save(
                     AdoptionPost.builder()
                             .name("Torty")
                             .description("Tartaruga Florida resistente e tranquilla.")
@@ -203,11 +224,11 @@ public class DataInitializer implements CommandLineRunner {
                             .ownerId(3L)
                             .active(true)
                             .adopterId(null)
-                            .imageBase64(encodeImage("Torty.jpg"))
+                            .imageKey(storeImage("Torty.jpg"))
                             .build()
             );
 
-            adoptionPostRepository.save(
+            save(
                     AdoptionPost.builder()
                             .name("Bubbles")
                             .description("Betta Splendens coloratissimo e vivace.")
@@ -221,21 +242,48 @@ public class DataInitializer implements CommandLineRunner {
                             .ownerId(3L)
                             .active(true)
                             .adopterId(null)
-                            .imageBase64(encodeImage("Bubbles.jpg"))
+                            .imageKey(storeImage("Bubbles.jpg"))
                             .build()
             );
 
             System.out.println(">>> DB initialized");
         }
+
+        // posts saved with the image in the database, before the image store existed
+        legacyImageMigration.migrate();
+
+        // posts saved before locations were geocoded
+        for (AdoptionPost post : adoptionPostRepository.findByLatitudeIsNullAndLocationIsNotNull()) {
+            geocode(post);
+            if (post.getLatitude() != null) {
+                adoptionPostRepository.save(post);
+            }
+        }
+
+        // posts saved above or before the change feed existed
+        postChangeRepository.recordMissing();
     }
 
 
 
-private String encodeImage(String fileName) {
-    try {
-        ClassPathResource imgFile = new ClassPathResource("images/" + fileName);
-        byte[] bytes = StreamUtils.copyToByteArray(imgFile.getInputStream());
-        return Base64.getEncoder().encodeToString(bytes);
+private void save(AdoptionPost post) {
+    geocode(post);
+    if (post.getImageKey() != null) {
+        post.setImagePlaceholder(imageProcessingService.createVariants(post.getImageKey()));
+    }
+    adoptionPostRepository.save(post);
+}
+
+private void geocode(AdoptionPost post) {
+    gazetteerService.locate(post.getLocation()).ifPresent(point -> {
+        post.setLatitude(point.latitude());
+        post.setLongitude(point.longitude());
+    });
+}
+
+private String storeImage(String fileName) {
+    try (InputStream in = new ClassPathResource("images/" + fileName).getInputStream()) {
+        return imageStorageService.store(in);
     } catch (IOException e) {
         e.printStackTrace();
         return null;
@@ -0,0 +1,40 @@
+package org.example.adoptionpostservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.MultipartConfigFactory;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import static org.example.adoptionpostservice.constants.AdoptionPostEndPoints.IMPORT_ADOPTION_POSTS;
+
+/**
+ * Upload limits of the bulk import, which uploads a zip with all the images of the posts.
+ * Multipart limits apply to a whole servlet, so the import URL is mapped to a second DispatcherServlet,
+ * on the same application context, with the limits of the import; the other endpoints, served by the main
+ * DispatcherServlet, keep those of spring.servlet.multipart.
+ */
+@Configuration
+public class ImportServletConfig {
+
+    // path of AdoptionPostController
+    private static final String IMPORT_PATH = "/adoption" + IMPORT_ADOPTION_POSTS;
+
+    @Bean
+    public ServletRegistrationBean<DispatcherServlet> importServlet(
+            WebApplicationContext context,
+            @Value("${app.import.max-file-size}") DataSize maxFileSize,
+            @Value("${app.import.max-request-size}") DataSize maxRequestSize) {
+        ServletRegistrationBean<DispatcherServlet> registration =
+                new ServletRegistrationBean<>(new DispatcherServlet(context), IMPORT_PATH);
+        registration.setName("importServlet");
+        MultipartConfigFactory multipart = new MultipartConfigFactory();
+        multipart.setMaxFileSize(maxFileSize);
+        multipart.setMaxRequestSize(maxRequestSize);
+        registration.setMultipartConfig(multipart.createMultipartConfig());
+        return registration;
+    }
+}
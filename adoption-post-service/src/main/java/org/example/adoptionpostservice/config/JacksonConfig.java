@@ -0,0 +1,49 @@
+package org.example.adoptionpostservice.config;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.example.adoptionpostservice.service.FieldSelection;
+import org.example.shareddtos.dto.AdoptionPostSummaryDto;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Customizes the application ObjectMapper (also used for RabbitMQ messages) to support sparse fieldsets,
+ * and registers the binary encodings (CBOR and Smile) served to clients that ask for them in the Accept header.
+ * JSON stays the default encoding.
+ */
+@Configuration
+public class JacksonConfig {
+
+    // applies the fields filter to the shared summary DTO, which cannot be annotated here
+    @JsonFilter(FieldSelection.FILTER_ID)
+    private interface FieldsFilterMixIn {
+    }
+
+    // without a "fields" parameter every property is written
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldSelectionCustomizer() {
+        return builder -> builder
+                .mixIn(AdoptionPostSummaryDto.class, FieldsFilterMixIn.class)
+                .filters(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+    }
+
+    // built from the application builder, so binary responses get the same modules, mix-ins and filters as JSON;
+    // replacing the default converters keeps them after the JSON one
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
@@ -1,6 +1,7 @@
 package org.example.adoptionpostservice.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
@@ -9,6 +10,8 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -23,9 +26,18 @@ public class RabbitMQConfig {
     @Value("${app.rabbitmq.queue.chat-request-accepted}")
     private String chatRequestAcceptedQueue;
 
+    @Value("${app.rabbitmq.queue.chat-request-accepted-dead-letter}")
+    private String chatRequestAcceptedDeadLetterQueue;
+
     @Value("${app.rabbitmq.routingkey.chat-request-accepted}")
     private String chatRequestAcceptedRoutingKey;
 
+    @Value("${app.rabbitmq.routingkey.post-changed}")
+    private String postChangedRoutingKey;
+
+    @Value("${app.rabbitmq.listener.batch-size:50}")
+    private int listenerBatchSize;
+
     @Bean
     public DirectExchange exchange() {
         return new DirectExchange(adottatoExchange, true, false);
@@ -36,6 +48,13 @@ public class RabbitMQConfig {
         return new Queue(chatRequestAcceptedQueue, true);
     }
 
+    // messages that cannot be applied, kept for inspection instead of being redelivered forever;
+    // published by RabbitMQService through the default exchange, so no binding is needed
+    @Bean
+    public Queue chatRequestAcceptedDeadLetterQueue() {
+        return new Queue(chatRequestAcceptedDeadLetterQueue, true);
+    }
+
     @Bean
     public Binding bindingChatRequestAccepted(Queue chatRequestAcceptedQueue, DirectExchange exchange) {
         return BindingBuilder.bind(chatRequestAcceptedQueue)
@@ -43,11 +62,37 @@ public class RabbitMQConfig {
                 .with(chatRequestAcceptedRoutingKey);
     }
 
+    // each replica gets its own exclusive queue, so post changes reach all of them
+    @Bean
+    public Queue postChangedQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding bindingPostChanged(Queue postChangedQueue, DirectExchange exchange) {
+        return BindingBuilder.bind(postChangedQueue)
+                .to(exchange)
+                .with(postChangedRoutingKey);
+    }
+
     @Bean
     public MessageConverter messageConverter(ObjectMapper objectMapper) {
         return new Jackson2JsonMessageConverter(objectMapper);
     }
 
+    // delivers messages to the listener in lists of up to listenerBatchSize,
+    // waiting at most the receive timeout (1s by default) to fill a list
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(listenerBatchSize);
+        return factory;
+    }
+
     @Bean
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory,
                                          MessageConverter converter) {
@@ -0,0 +1,92 @@
+package org.example.adoptionpostservice.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets users read their own writes while the replica catches up with the primary.
+ * Tracks the user of each request (from the "User-Id" header set by the gateway) and, when one of their
+ * read-write transactions commits, sends their read-only transactions to the primary for a while.
+ * Only the requests received by this replica of the service are tracked.
+ */
+public class ReplicationLagGuard extends OncePerRequestFilter implements TransactionExecutionListener {
+
+    private static final ThreadLocal<Long> currentUser = new ThreadLocal<>();
+
+    private final long pinNanos;
+
+    // user ID -> System.nanoTime() of their last write
+    private final Map<Long, Long> lastWrites = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param pinAfterWrite how long the reads of a user go to the primary after their last write,
+     *                      longer than the usual replication lag
+     */
+    public ReplicationLagGuard(Duration pinAfterWrite) {
+        this.pinNanos = pinAfterWrite.toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String userId = request.getHeader("User-Id");
+        try {
+            currentUser.set(userId != null && !userId.isBlank() ? Long.valueOf(userId.trim()) : null);
+        } catch (NumberFormatException e) {
+            currentUser.remove();
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            currentUser.remove();
+        }
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        Long userId = currentUser.get();
+        if (userId == null || commitFailure != null || transaction.isReadOnly()) {
+            return;
+        }
+        long now = System.nanoTime();
+        lastWrites.values().removeIf(writtenAt -> now - writtenAt >= pinNanos);
+        lastWrites.put(userId, now);
+    }
+
+    /**
+     * @return true if the current request comes from a user who has written recently,
+     * so their reads must go to the primary
+     */
+    public boolean isPinnedToPrimary() {
+        Long userId = currentUser.get();
+        if (userId == null) {
+            return false;
+        }
+        Long writtenAt = lastWrites.get(userId);
+        return writtenAt != null && System.nanoTime() - writtenAt < pinNanos;
+    }
+
+    /**
+     * Runs a task again once the replica has caught up with the writes committed so far,
+     * e.g. to evict a cache entry that a read from the replica may have filled with the old row.
+     *
+     * @param task the task
+     */
+    public void afterLag(Runnable task) {
+        CompletableFuture.runAsync(task, CompletableFuture.delayedExecutor(pinNanos, TimeUnit.NANOSECONDS));
+    }
+}
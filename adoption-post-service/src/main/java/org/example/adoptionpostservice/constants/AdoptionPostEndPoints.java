@@ -9,12 +9,36 @@ package org.example.adoptionpostservice.constants;
         /** URL to retrieve a filtered list of adoption posts based on specific criteria */
         public static final String GET_FILTERED_ADOPTION_POSTS = "/get/list";
 
+        /** URL to retrieve a filtered list of adoption posts with cursor-based (keyset) pagination */
+        public static final String GET_FILTERED_ADOPTION_POSTS_BY_CURSOR = "/get/list/cursor";
+
+        /** URL to retrieve the number of posts for each value of the search filters */
+        public static final String GET_ADOPTION_POST_FACETS = "/get/facets";
+
+        /** URL to retrieve the changes to adoption posts made after a cursor (change feed) */
+        public static final String GET_ADOPTION_POST_CHANGES = "/get/changes";
+
+        /** URL to retrieve the summaries of many adoption posts by their IDs */
+        public static final String GET_ADOPTION_POST_SUMMARIES = "/get/summaries";
+
         /** URL to retrieve the details of a specific adoption post by its ID */
         public static final String GET_ADOPTION_POST_BY_ID = "/get/post/{postId}";
 
+        /** URL to retrieve the active adoption posts most similar to a specific post */
+        public static final String GET_SIMILAR_ADOPTION_POSTS = "/get/post/{postId}/similar";
+
+        /** URL to stream an adoption post image by its content key */
+        public static final String GET_ADOPTION_POST_IMAGE = "/get/image/{imageKey}";
+
         /** URL to create a new adoption post */
         public static final String CREATE_ADOPTION_POST = "/post/create";
 
+        /** URL to create many adoption posts at once from an NDJSON or CSV file */
+        public static final String IMPORT_ADOPTION_POSTS = "/post/import";
+
+        /** URL to export all the adoption posts matching the search filters as NDJSON */
+        public static final String EXPORT_ADOPTION_POSTS = "/post/export";
+
         /** URL to delete a specific adoption post by its ID */
         public static final String DELETE_ADOPTION_POST_BY_ID = "/post/delete/{postId}";
 
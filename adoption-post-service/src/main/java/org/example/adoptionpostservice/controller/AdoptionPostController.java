@@ -1,77 +1,335 @@
 package org.example.adoptionpostservice.controller;
 
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.example.adoptionpostservice.dto.AdoptionPostChangesDto;
 import org.example.adoptionpostservice.dto.AdoptionPostDetailDto;
+import org.example.adoptionpostservice.dto.AdoptionPostFacetsDto;
+import org.example.adoptionpostservice.dto.AdoptionPostImportResultDto;
+import org.example.adoptionpostservice.dto.AdoptionPostLookupDto;
+import org.example.adoptionpostservice.dto.AdoptionPostSliceDto;
 import org.example.shareddtos.dto.AdoptionPostSearchDto;
 import org.example.shareddtos.dto.AdoptionPostSummaryDto;
+import org.example.adoptionpostservice.service.AdoptionPostImportService;
 import org.example.adoptionpostservice.service.AdoptionPostService;
+import org.example.adoptionpostservice.service.FieldSelection;
+import org.example.adoptionpostservice.service.ImageProcessingService;
+import org.example.adoptionpostservice.service.ImageProcessingService.ThumbnailSize;
+import org.example.adoptionpostservice.service.ImageStorageService;
 import static org.example.adoptionpostservice.constants.AdoptionPostEndPoints.*;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.AccessDeniedException;
-import java.util.Base64;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipException;
 
 /**
  * REST Controller responsible for managing pet adoption posts.
  * It provides functionality for:
  * - Retrieving all adoption posts with pagination
- * - Filtering adoption posts by various criteria
+ * - Filtering adoption posts by various criteria, including distance from a place
+ * - Scrolling filtered adoption posts with an opaque cursor
+ * - Counting the adoption posts for each value of the search filters
  * - Getting detailed information about specific adoption posts
  * - Creating new adoption posts
  * - Updating existing adoption posts
  * - Deleting adoption posts with user authorization
+ * - Streaming adoption post images
  */
 @RestController
 @RequestMapping("/adoption")
 public class AdoptionPostController {
 
+    private static final int MAX_SLICE_SIZE = 100;
+
+    private static final int MAX_CHANGES_BATCH_SIZE = 1000;
+
+    private static final int MAX_LOOKUP_IDS = 200;
+
+    private static final int MAX_SIMILAR_POSTS = 20;
+
+    // request attributes of the Tomcat sendfile support (see org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    // smaller images (most thumbnails) are copied through the response buffer, as by the Tomcat DefaultServlet
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
     private final AdoptionPostService adoptionPostService;
 
+    private final ImageStorageService imageStorageService;
+
+    private final ImageProcessingService imageProcessingService;
+
+    private final AdoptionPostImportService importService;
+
     /**
      * Constructor with dependencies injected.
      *
      * @param service the service for managing adoption post operations
+     * @param imageStorageService the store holding adoption post images
+     * @param imageProcessingService creates the thumbnails and placeholder of uploaded images
+     * @param importService the service importing many adoption posts at once
      */
-    public AdoptionPostController(AdoptionPostService service) {
+    public AdoptionPostController(AdoptionPostService service, ImageStorageService imageStorageService,
+                                  ImageProcessingService imageProcessingService,
+                                  AdoptionPostImportService importService) {
         this.adoptionPostService = service;
+        this.imageStorageService = imageStorageService;
+        this.imageProcessingService = imageProcessingService;
+        this.importService = importService;
     }
 
     /**
      * Retrieves adoption posts filtered by specified criteria with pagination.
      *
+     * A radius search is given by a center (near=place, or latitude and longitude) and radiusKm;
+     * with a center, results can be sorted by distance (sort=distance).
+     *
      * @param filterDto the filter criteria for searching adoption posts
      * @param pageable pagination information for the results
-     * @return a page of adoption post summaries matching the filter criteria
+     * @param fields comma-separated summary properties to return (all if omitted), e.g. "id,location"
+     * @return ResponseEntity containing a page of adoption post summaries matching the filter criteria,
+     *         or 400 if the search is centered on an unknown place or a field is unknown
      */
     @GetMapping(GET_FILTERED_ADOPTION_POSTS)
-    public Page<AdoptionPostSummaryDto> getAdoptionPostsFilteredBy(
+    public ResponseEntity<MappingJacksonValue> getAdoptionPostsFilteredBy(
             @Valid AdoptionPostSearchDto filterDto,
-            Pageable pageable) {
-        return adoptionPostService.getFilteredPosts(filterDto, pageable);
+            Pageable pageable,
+            @RequestParam(required = false) String fields) {
+        try {
+            Set<String> selected = FieldSelection.parse(fields, FieldSelection.SUMMARY_FIELDS);
+            return ResponseEntity.ok(withFields(adoptionPostService.getFilteredPosts(filterDto, pageable, selected), selected));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Retrieves adoption posts filtered by specified criteria with keyset pagination, newest first.
+     * Intended for infinite scroll: no exact total is computed.
+     *
+     * @param filterDto the filter criteria for searching adoption posts
+     * @param cursor the cursor returned with the previous slice (omit for the first slice)
+     * @param size maximum number of posts in the slice (1-100)
+     * @param withTotal whether to include an approximate total of matching posts
+     * @return ResponseEntity containing the slice of adoption post summaries,
+     *         or 400 if the cursor is malformed or the search is centered on an unknown place
+     */
+    @GetMapping(GET_FILTERED_ADOPTION_POSTS_BY_CURSOR)
+    public ResponseEntity<AdoptionPostSliceDto> getAdoptionPostsFilteredByCursor(
+            @Valid AdoptionPostSearchDto filterDto,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        try {
+            int sliceSize = Math.max(1, Math.min(size, MAX_SLICE_SIZE));
+            return ResponseEntity.ok(adoptionPostService.getFilteredPostsByCursor(filterDto, cursor, sliceSize, withTotal));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Retrieves the facet counts of a search: for every filter (species, breed, gender, color, location)
+     * the number of posts each of its values would yield, given the other filters.
+     *
+     * @param filterDto the filter criteria for searching adoption posts
+     * @return ResponseEntity containing the facet counts of the search,
+     *         or 400 if the search is centered on an unknown place
+     */
+    @GetMapping(GET_ADOPTION_POST_FACETS)
+    public ResponseEntity<AdoptionPostFacetsDto> getAdoptionPostFacets(@Valid AdoptionPostSearchDto filterDto) {
+        try {
+            return ResponseEntity.ok(adoptionPostService.getFacetCounts(filterDto));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Retrieves the changes to adoption posts made after a cursor, so that clients can keep a copy
+     * of the posts in sync by downloading only what changed. Start with since=0, then pass the
+     * nextCursor of each response; deleted posts are reported as tombstones.
+     *
+     * @param since the nextCursor of the previous response (0 to read all the posts)
+     * @param limit maximum number of changes read (1-1000)
+     * @return ResponseEntity containing the changes, or 400 if the cursor is negative
+     */
+    @GetMapping(GET_ADOPTION_POST_CHANGES)
+    public ResponseEntity<AdoptionPostChangesDto> getAdoptionPostChanges(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "100") int limit) {
+        if (since < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        int batchSize = Math.max(1, Math.min(limit, MAX_CHANGES_BATCH_SIZE));
+        return ResponseEntity.ok(adoptionPostService.getChanges(since, batchSize));
+    }
+
+    /**
+     * Retrieves the summaries of many adoption posts at once, e.g. the posts of the chats in the inbox.
+     *
+     * @param ids the IDs of the adoption posts (at most 200)
+     * @return ResponseEntity containing one result per requested ID, in request order,
+     *         with found=false for missing posts, or 400 if no ID or more than 200 IDs are given
+     */
+    @GetMapping(GET_ADOPTION_POST_SUMMARIES)
+    public ResponseEntity<List<AdoptionPostLookupDto>> getAdoptionPostSummaries(@RequestParam List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_LOOKUP_IDS || ids.contains(null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(adoptionPostService.getSummariesByIds(ids));
     }
 
     /**
      * Retrieves detailed information about a specific adoption post by its ID.
      *
      * @param postId [from path] the ID of the adoption post to retrieve
-     * @return ResponseEntity containing the adoption post details or 404 if not found
+     * @param fields comma-separated detail properties to return (all if omitted)
+     * @return ResponseEntity containing the adoption post details, 404 if not found or 400 if a field is unknown
      */
     @GetMapping(GET_ADOPTION_POST_BY_ID)
-    public ResponseEntity<AdoptionPostDetailDto> getAdoptionPostById(@PathVariable Long postId) {
+    public ResponseEntity<MappingJacksonValue> getAdoptionPostById(@PathVariable Long postId,
+                                                                   @RequestParam(required = false) String fields) {
         try {
-            AdoptionPostDetailDto dto = adoptionPostService.getPostById(postId);
-            return ResponseEntity.ok(dto);
+            Set<String> selected = FieldSelection.parse(fields, FieldSelection.DETAIL_FIELDS);
+            AdoptionPostDetailDto dto = adoptionPostService.getPostById(postId, selected);
+            return ResponseEntity.ok(withFields(dto, selected));
         } catch (NoSuchElementException e) {
             return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Retrieves the active adoption posts most similar to a post, for the "similar animals" section of its page.
+     *
+     * @param postId [from path] the ID of the adoption post
+     * @param size maximum number of posts to return (1-20)
+     * @return ResponseEntity containing the summaries of the similar posts, most similar first, or 404 if not found
+     */
+    @GetMapping(GET_SIMILAR_ADOPTION_POSTS)
+    public ResponseEntity<List<AdoptionPostSummaryDto>> getSimilarAdoptionPosts(
+            @PathVariable Long postId,
+            @RequestParam(defaultValue = "10") int size) {
+        try {
+            int limit = Math.max(1, Math.min(size, MAX_SIMILAR_POSTS));
+            return ResponseEntity.ok(adoptionPostService.getSimilarPosts(postId, limit));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Streams an adoption post image from the image store.
+     * Images are addressed by the hash of their content, so responses are cached as immutable.
+     * Supports single byte-range requests and conditional requests on the ETag.
+     * If a thumbnail size is requested, the matching thumbnail is sent,
+     * falling back to the original image when the thumbnail is not available.
+     * Large images are sent by Tomcat with sendfile, from the file to the socket without copies in user space.
+     *
+     * @param imageKey [from path] the content key of the image
+     * @param size optional thumbnail size (small, medium, large)
+     * @param headers the request headers (Range, If-None-Match)
+     * @param request the request, carrying the sendfile attributes
+     * @return ResponseEntity streaming the image (200 or 206), 304 if not modified,
+     *         404 if not found, or 416 if the range is not satisfiable
+     */
+    @GetMapping(GET_ADOPTION_POST_IMAGE)
+    public ResponseEntity<StreamingResponseBody> getAdoptionPostImage(
+            @PathVariable String imageKey,
+            @RequestParam(required = false) String size,
+            @RequestHeader HttpHeaders headers,
+            HttpServletRequest request) {
+        String variant = ThumbnailSize.fromVariant(size).map(ThumbnailSize::getVariant).orElse(null);
+        Path path = variant != null ? imageStorageService.findVariant(imageKey, variant).orElse(null) : null;
+        boolean fallback = path == null && size != null;
+        if (path == null) {
+            variant = null;
+            path = imageStorageService.find(imageKey).orElse(null);
+        }
+        if (path == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Path image = path;
+        String etag = "\"" + imageKey + (variant != null ? "_" + variant : "") + "\"";
+        // a fallback must not be cached for long, so the thumbnail is picked up once it exists
+        CacheControl cacheControl = fallback
+                ? CacheControl.maxAge(1, TimeUnit.MINUTES).cachePublic()
+                : CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+        if (headers.getIfNoneMatch().contains(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        try {
+            long length = Files.size(image);
+            MediaType contentType = MediaType.parseMediaType(imageStorageService.probeContentType(image));
+            long start = 0;
+            long end = length - 1;
+            HttpStatus status = HttpStatus.OK;
+            try {
+                List<HttpRange> ranges = headers.getRange();
+                if (ranges.size() == 1) { // multiple ranges are ignored and the whole image is sent
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                    status = HttpStatus.PARTIAL_CONTENT;
+                }
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                        .build();
+            }
+            long position = start;
+            long count = end - start + 1;
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(status)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .contentType(contentType)
+                    .contentLength(count)
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (status == HttpStatus.PARTIAL_CONTENT) {
+                response.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+            if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+                // no body is written: Tomcat sends the file once the headers are committed
+                request.setAttribute(SENDFILE_FILENAME_ATTR, image.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START_ATTR, position);
+                request.setAttribute(SENDFILE_END_ATTR, position + count);
+                return response.build();
+            }
+            return response.body(out -> transferImage(image, position, count, out));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
@@ -90,11 +348,11 @@ public class AdoptionPostController {
             @RequestPart(value = "image", required = false) MultipartFile imageFile,
             @RequestHeader("User-Id") Long userId) {
         try {
-            String base64Image = null;
+            postDto.setImageKey(null);
+            postDto.setImagePlaceholder(null);
             if (imageFile != null && !imageFile.isEmpty()) {
-                base64Image = Base64.getEncoder().encodeToString(imageFile.getBytes());
+                storeImage(imageFile, postDto);
             }
-            postDto.setImageBase64(base64Image);
             AdoptionPostDetailDto created = adoptionPostService.createPost(postDto, userId);
             return ResponseEntity.status(HttpStatus.CREATED).body(created);
         } catch (IOException e) {
@@ -102,6 +360,57 @@ public class AdoptionPostController {
         }
     }
 
+    /**
+     * Creates many adoption posts at once for the specified user, e.g. when a shelter joins.
+     * The posts are read from an NDJSON or CSV file and may reference images of a zip archive
+     * by entry name; each row is validated on its own, so invalid rows do not stop the others.
+     *
+     * @param postsFile the posts to import, one per NDJSON line or CSV record (multipart part)
+     * @param imagesFile optional zip archive with the images of the posts (multipart part)
+     * @param userId [from header] the ID of the user creating the posts
+     * @return ResponseEntity containing the outcome of every row,
+     *         HTTP 400 if the archive is not a valid zip, HTTP 413 if the archive has too many entries
+     *         or is too large once extracted, or HTTP 500 if the files cannot be read
+     */
+    @PostMapping(value = IMPORT_ADOPTION_POSTS, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<AdoptionPostImportResultDto> importAdoptionPosts(
+            @RequestPart("posts") MultipartFile postsFile,
+            @RequestPart(value = "images", required = false) MultipartFile imagesFile,
+            @RequestHeader("User-Id") Long userId) {
+        try {
+            return ResponseEntity.ok(importService.importPosts(postsFile, imagesFile, userId));
+        } catch (ZipException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Exports all the adoption posts matching the search filters as NDJSON, one post per line,
+     * e.g. for analytics or partner portals. The export is streamed while it is read from the database.
+     *
+     * @param filterDto the search filters
+     * @param withImages whether to include the image key and placeholder of each post
+     * @return ResponseEntity streaming the posts,
+     *         or HTTP 400 if the search is centered on an unknown place
+     */
+    @GetMapping(EXPORT_ADOPTION_POSTS)
+    public ResponseEntity<StreamingResponseBody> exportAdoptionPosts(
+            @Valid AdoptionPostSearchDto filterDto,
+            @RequestParam(defaultValue = "false") boolean withImages) {
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"adoption-posts.ndjson\"")
+                    .body(adoptionPostService.exportPosts(filterDto, withImages));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Deletes an adoption post by its ID with user authorization check.
      *
@@ -131,7 +440,8 @@ public class AdoptionPostController {
      * @param postId [from path] the ID of the adoption post to update
      * @param userId [from header] the ID of the user requesting the update
      * @return ResponseEntity containing the updated adoption post,
-     *         HTTP 403 if unauthorized, or other appropriate status codes
+     *         HTTP 403 if unauthorized, HTTP 409 if the post has been changed concurrently,
+     *         or other appropriate status codes
      */
     @PutMapping(value = UPDATE_ADOPTION_POST_BY_ID, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<AdoptionPostDetailDto> updateAdoptionPost(
@@ -140,15 +450,17 @@ public class AdoptionPostController {
             @PathVariable Long postId,
             @RequestHeader("User-Id") Long userId) {
         try {
+            postDto.setImagePlaceholder(null);
             if (imageFile != null && !imageFile.isEmpty()) {
-                String base64Image = Base64.getEncoder().encodeToString(imageFile.getBytes());
-                postDto.setImageBase64(base64Image);
+                storeImage(imageFile, postDto);
             }
 
             AdoptionPostDetailDto updated = adoptionPostService.updatePost(postDto, postId, userId);
             return ResponseEntity.ok(updated);
         } catch (AccessDeniedException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -160,13 +472,21 @@ public class AdoptionPostController {
      *
      * @param userId [from header] the ID of the user requesting his own created posts
      * @param pageable pagination information for the results
-     * @return a page of adoption post summaries created by the user
+     * @param fields comma-separated summary properties to return (all if omitted)
+     * @return ResponseEntity containing a page of adoption post summaries created by the user,
+     *         or 400 if a field is unknown
      */
     @GetMapping(GET_ADOPTION_POSTS_BY_OWNER)
-    public Page<AdoptionPostSummaryDto> getAdoptionPostsByOwner(
+    public ResponseEntity<MappingJacksonValue> getAdoptionPostsByOwner(
             @RequestHeader("User-Id") Long userId,
-            Pageable pageable) {
-        return adoptionPostService.getPostsByOwnerId(userId, pageable);
+            Pageable pageable,
+            @RequestParam(required = false) String fields) {
+        try {
+            Set<String> selected = FieldSelection.parse(fields, FieldSelection.SUMMARY_FIELDS);
+            return ResponseEntity.ok(withFields(adoptionPostService.getPostsByOwnerId(userId, pageable, selected), selected));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     /**
@@ -174,12 +494,77 @@ public class AdoptionPostController {
      *
      * @param userId [from header] the ID of the user requesting his own adopted posts
      * @param pageable pagination information for the results
-     * @return a page of adoption post summaries adopted by the user
+     * @param fields comma-separated summary properties to return (all if omitted)
+     * @return ResponseEntity containing a page of adoption post summaries adopted by the user,
+     *         or 400 if a field is unknown
      */
     @GetMapping(GET_ADOPTION_POSTS_BY_ADOPTER)
-    public Page<AdoptionPostSummaryDto> getAdoptionPostsByAdopter(
+    public ResponseEntity<MappingJacksonValue> getAdoptionPostsByAdopter(
             @RequestHeader("User-Id") Long userId,
-            Pageable pageable) {
-        return adoptionPostService.getPostsByAdopterId(userId, pageable);
+            Pageable pageable,
+            @RequestParam(required = false) String fields) {
+        try {
+            Set<String> selected = FieldSelection.parse(fields, FieldSelection.SUMMARY_FIELDS);
+            return ResponseEntity.ok(withFields(adoptionPostService.getPostsByAdopterId(userId, pageable, selected), selected));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Wraps a response body so that only the selected properties of the post DTOs are written.
+     *
+     * @param body the response body
+     * @param fields the selected properties, or null to write all of them
+     * @return the wrapped body
+     */
+    private static MappingJacksonValue withFields(Object body, Set<String> fields) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        if (fields != null) {
+            value.setFilters(new SimpleFilterProvider()
+                    .addFilter(FieldSelection.FILTER_ID, SimpleBeanPropertyFilter.filterOutAllExcept(fields)));
+        }
+        return value;
+    }
+
+    /**
+     * Stores an uploaded image in the image store and creates its thumbnails,
+     * before the post is saved: the transaction saving the post does not wait for them.
+     *
+     * @param imageFile the uploaded image
+     * @param postDto the post receiving the key and the placeholder of the image
+     * @throws IOException if the image cannot be read or stored
+     */
+    private void storeImage(MultipartFile imageFile, AdoptionPostDetailDto postDto) throws IOException {
+        String imageKey;
+        try (InputStream in = imageFile.getInputStream()) {
+            imageKey = imageStorageService.store(in);
+        }
+        postDto.setImageKey(imageKey);
+        postDto.setImagePlaceholder(imageProcessingService.createVariants(imageKey));
+    }
+
+    /**
+     * Copies a slice of an image file to the response, when sendfile is not used.
+     * The response is a stream, not a socket channel, so the bytes go through a buffer.
+     *
+     * @param path the image file
+     * @param position first byte to send
+     * @param count number of bytes to send
+     * @param out the response output stream
+     * @throws IOException if the file cannot be read or the client disconnects
+     */
+    private static void transferImage(Path path, long position, long count, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            while (count > 0) {
+                long sent = channel.transferTo(position, count, target);
+                if (sent <= 0) {
+                    break; // end of file reached
+                }
+                position += sent;
+                count -= sent;
+            }
+        }
     }
 }
\ No newline at end of file
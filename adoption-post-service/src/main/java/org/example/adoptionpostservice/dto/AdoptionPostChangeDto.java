@@ -0,0 +1,18 @@
+package org.example.adoptionpostservice.dto;
+
+import lombok.*;
+import org.example.shareddtos.dto.AdoptionPostSummaryDto;
+
+/**
+ * DTO representing the last change to a post in the change feed.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class AdoptionPostChangeDto {
+    private long seq;
+    private Long postId;
+    private boolean deleted; // tombstone: the post has been deleted, post is null
+    private AdoptionPostSummaryDto post; // current state of the post
+}
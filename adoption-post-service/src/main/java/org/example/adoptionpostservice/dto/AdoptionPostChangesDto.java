@@ -0,0 +1,19 @@
+package org.example.adoptionpostservice.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * DTO used to return a batch of the change feed.
+ * Clients store nextCursor and pass it as "since" to get the following changes.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class AdoptionPostChangesDto {
+    private List<AdoptionPostChangeDto> changes; // at most one per post, in sequence order
+    private long nextCursor;
+    private boolean hasMore; // more changes are available right away
+}
@@ -1,6 +1,8 @@
 package org.example.adoptionpostservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import lombok.*;
+import org.example.adoptionpostservice.service.FieldSelection;
 
 import java.time.LocalDateTime;
 
@@ -10,8 +12,10 @@ import java.time.LocalDateTime;
  */
 @AllArgsConstructor
 @NoArgsConstructor
+@Builder(toBuilder = true)
 @Getter
 @Setter
+@JsonFilter(FieldSelection.FILTER_ID)
 public class AdoptionPostDetailDto {
     private Long id;
     private String name;
@@ -26,5 +30,8 @@ public class AdoptionPostDetailDto {
     private Long ownerId;
     private Boolean active;
     private Long adopterId;
-    private String imageBase64;
+    private String imageKey;
+    private String imagePlaceholder;
+    private Long version; // on update, if set, must match the current version of the post
+    private Long views; // number of views, read only
 }
@@ -0,0 +1,20 @@
+package org.example.adoptionpostservice.dto;
+
+import lombok.*;
+
+import java.util.Map;
+
+/**
+ * DTO used to return the facet counts of a search.
+ * For every facet (species, breed, gender, color, location) it maps each value
+ * to the number of posts the search would return if that value were selected,
+ * keeping the filters on the other facets.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class AdoptionPostFacetsDto {
+    private long total; // number of posts matching the whole search
+    private Map<String, Map<String, Long>> facets;
+}
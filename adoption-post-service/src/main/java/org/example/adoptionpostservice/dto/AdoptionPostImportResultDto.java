@@ -0,0 +1,31 @@
+package org.example.adoptionpostservice.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * DTO reporting the outcome of a bulk import, row by row.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class AdoptionPostImportResultDto {
+    private int created;
+    private int rejected;
+    private List<Row> rows;
+
+    /**
+     * Outcome of a single row.
+     */
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @Getter
+    @Setter
+    public static class Row {
+        private int row; // line (NDJSON) or record (CSV, header excluded) number, starting from 1
+        private Long postId; // null if rejected
+        private List<String> errors; // empty if created
+    }
+}
@@ -0,0 +1,31 @@
+package org.example.adoptionpostservice.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+/**
+ * DTO representing one row of a bulk import file (an NDJSON line or a CSV record).
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class AdoptionPostImportRow {
+    @NotBlank @Size(max = 255)
+    private String name;
+    @Size(max = 255)
+    private String description;
+    @NotBlank @Size(max = 255)
+    private String species;
+    @Size(max = 255)
+    private String breed;
+    @NotBlank @Pattern(regexp = "[MF]", message = "must be M or F")
+    private String gender;
+    @NotNull @PositiveOrZero
+    private Integer age; // in months
+    @Size(max = 255)
+    private String color;
+    @NotBlank @Size(max = 255)
+    private String location;
+    private String image; // name of the image entry in the uploaded zip archive (optional)
+}
@@ -0,0 +1,72 @@
+package org.example.adoptionpostservice.dto;
+
+import org.example.adoptionpostservice.model.AdoptionPost;
+
+import java.time.LocalDateTime;
+
+/**
+ * Searchable fields of an AdoptionPost, as stored in the in-memory search index.
+ *
+ * @param id       post ID
+ * @param species  species of the animal
+ * @param breed    breed of the animal
+ * @param gender   gender of the animal
+ * @param age      age of the animal, in months
+ * @param color    color of the animal
+ * @param location province where the animal is
+ * @param active   false if the animal has been adopted
+ * @param publicationDate publication date of the post (search results are ordered by it, newest first)
+ * @param latitude    latitude of the location (null if not geocoded)
+ * @param longitude   longitude of the location (null if not geocoded)
+ * @param name        name of the animal (only used to build the full-text index)
+ * @param description description of the post (only used to build the full-text index)
+ */
+public record AdoptionPostIndexEntry(
+        Long id,
+        String species,
+        String breed,
+        String gender,
+        Integer age,
+        String color,
+        String location,
+        Boolean active,
+        LocalDateTime publicationDate,
+        Double latitude,
+        Double longitude,
+        String name,
+        String description
+) {
+
+    /**
+     * Extracts the searchable fields of a post.
+     *
+     * @param post the AdoptionPost entity
+     * @return the index entry of the post
+     */
+    public static AdoptionPostIndexEntry of(AdoptionPost post) {
+        return new AdoptionPostIndexEntry(post.getId(), post.getSpecies(), post.getBreed(), post.getGender(),
+                post.getAge(), post.getColor(), post.getLocation(), post.getActive(),
+                post.getPublicationDate(), post.getLatitude(), post.getLongitude(), post.getName(), post.getDescription());
+    }
+
+    /**
+     * Returns a copy of this entry without the text fields, which are not kept once indexed.
+     *
+     * @return the entry without name and description
+     */
+    public AdoptionPostIndexEntry withoutText() {
+        return new AdoptionPostIndexEntry(id, species, breed, gender, age, color, location, active,
+                publicationDate, latitude, longitude, null, null);
+    }
+
+    /**
+     * Returns a copy of this entry with a different active flag.
+     *
+     * @param active the new active flag
+     * @return the updated entry
+     */
+    public AdoptionPostIndexEntry withActive(Boolean active) {
+        return new AdoptionPostIndexEntry(id, species, breed, gender, age, color, location, active,
+                publicationDate, latitude, longitude, name, description);
+    }
+}
@@ -0,0 +1,17 @@
+package org.example.adoptionpostservice.dto;
+
+import lombok.*;
+import org.example.shareddtos.dto.AdoptionPostSummaryDto;
+
+/**
+ * DTO representing the result of looking up a post by ID in a multi-get.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class AdoptionPostLookupDto {
+    private Long id;
+    private boolean found;
+    private AdoptionPostSummaryDto post; // null if not found
+}
@@ -0,0 +1,21 @@
+package org.example.adoptionpostservice.dto;
+
+import lombok.*;
+import org.example.shareddtos.dto.AdoptionPostSummaryDto;
+
+import java.util.List;
+
+/**
+ * DTO used to return a slice of a keyset (cursor-based) search.
+ * Unlike a Page it carries no exact total, only the cursor to request the next slice.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class AdoptionPostSliceDto {
+    private List<AdoptionPostSummaryDto> content;
+    private boolean hasNext;
+    private String nextCursor; // null when there are no more results
+    private Long approximateTotal; // only if requested, may be slightly stale
+}
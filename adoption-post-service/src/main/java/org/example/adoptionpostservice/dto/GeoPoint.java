@@ -0,0 +1,31 @@
+package org.example.adoptionpostservice.dto;
+
+/**
+ * A point on the Earth's surface, in decimal degrees (WGS84).
+ *
+ * @param latitude  latitude in degrees
+ * @param longitude longitude in degrees
+ */
+public record GeoPoint(double latitude, double longitude) {
+
+    /** Mean Earth radius, in kilometers */
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    /** Length of one degree of latitude, in kilometers */
+    public static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+
+    /**
+     * Computes the great-circle distance to another point (haversine formula).
+     *
+     * @param other the other point
+     * @return the distance in kilometers
+     */
+    public double distanceKm(GeoPoint other) {
+        double dLat = Math.toRadians(other.latitude - latitude);
+        double dLon = Math.toRadians(other.longitude - longitude);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(other.latitude))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.adoptionpostservice.dto;
+
+/**
+ * Message broadcast to all the replicas of adoption post service when a post is created, updated or deleted,
+ * so each replica can update its search index and evict its caches.
+ *
+ * @param origin ID of the replica that made the change
+ * @param postId ID of the changed post
+ * @param before searchable fields of the post before the change (null if created)
+ * @param after  searchable fields of the post after the change (null if deleted)
+ */
+public record PostChangedMessage(
+        String origin,
+        Long postId,
+        AdoptionPostIndexEntry before,
+        AdoptionPostIndexEntry after
+) {
+}
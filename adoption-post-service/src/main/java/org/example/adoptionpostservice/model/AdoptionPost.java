@@ -2,21 +2,35 @@ package org.example.adoptionpostservice.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 /**
  * Entity representing an adoption post.
  * Stores all relevant information about an animal available for adoption.
+ * The table and its indexes are created by the migrations in db/migration.
+ * Posts are kept in the second-level cache (region "adoption-posts" of ehcache.xml); the other replicas
+ * evict a post when they are notified of its change (see PostChangeService).
  */
 @Entity
 @Table(name = "adoption_posts")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "adoption-posts")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class AdoptionPost {
+
+    /** Number of IDs reserved by each call to the sequence (its increment) */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "post_ids")
+    // pooled allocation: one call to the sequence every ID_ALLOCATION_SIZE inserts, which can be batched
+    @SequenceGenerator(name = "post_ids", sequenceName = "data_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     private String name;
@@ -28,11 +42,21 @@ public class AdoptionPost {
     private Integer age; // in months
     private String color;
     private String location;
+    private Double latitude; // geocoded from location when the post is saved
+    private Double longitude;
     private Long ownerId;
     private Boolean active;
     private Long adopterId;
 
-    @Column(columnDefinition = "TEXT")
-    private String imageBase64;
+    @Column(length = 64)
+    private String imageKey; // SHA-256 key of the image in the image store
+
+    @Column(length = 2048)
+    private String imagePlaceholder; // tiny blurred preview of the image, as a data URI
+
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version; // optimistic lock, incremented by every update
 
 }
\ No newline at end of file
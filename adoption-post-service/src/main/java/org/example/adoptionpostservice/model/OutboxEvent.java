@@ -0,0 +1,31 @@
+package org.example.adoptionpostservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing a RabbitMQ message waiting to be published (transactional outbox).
+ * It is written in the same transaction as the change it announces and published later by the relay.
+ */
+@Entity
+@Table(name = "outbox_events")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String routingKey;
+    private String payloadType; // type id header of the JSON message converter
+
+    @Column(columnDefinition = "text")
+    private String payload; // JSON body of the message
+
+    private LocalDateTime createdAt;
+    private LocalDateTime sentAt; // null until the broker has confirmed the message
+}
@@ -0,0 +1,29 @@
+package org.example.adoptionpostservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing a change to an adoption post in the change feed.
+ * Changes are numbered by a sequence that grows in commit order (a deferred trigger numbers them again
+ * right before their transaction commits, see V5__number_post_changes_at_commit),
+ * so a client that has read up to a sequence number never misses a later change.
+ * The number of a change saved in the current transaction is provisional.
+ */
+@Entity
+@Table(name = "post_changes")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PostChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long seq;
+
+    private Long postId;
+    private Boolean deleted; // tombstone: the post has been deleted
+    private LocalDateTime changedAt;
+}
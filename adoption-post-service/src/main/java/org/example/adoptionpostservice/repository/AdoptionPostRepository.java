@@ -1,19 +1,71 @@
 package org.example.adoptionpostservice.repository;
 
 
+import jakarta.persistence.QueryHint;
+import org.example.adoptionpostservice.dto.AdoptionPostIndexEntry;
 import org.example.adoptionpostservice.model.AdoptionPost;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for AdoptionPost entities.
- * Supports CRUD operations and specification-based filtering.
+ * Supports CRUD operations, specification-based filtering
+ * and summary projections (see {@link AdoptionPostRepositoryCustom}).
  */
 public interface AdoptionPostRepository extends JpaRepository<AdoptionPost, Long>,
-        JpaSpecificationExecutor<AdoptionPost> {
+        JpaSpecificationExecutor<AdoptionPost>, AdoptionPostRepositoryCustom {
+
+    /**
+     * Streams the searchable fields of all posts, used to build the in-memory search index.
+     * Must be called inside a transaction, and the stream must be closed.
+     *
+     * @return a stream of index entries
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new org.example.adoptionpostservice.dto.AdoptionPostIndexEntry("
+            + "p.id, p.species, p.breed, p.gender, p.age, p.color, p.location, p.active, p.publicationDate, "
+            + "p.latitude, p.longitude, p.name, p.description) "
+            + "from AdoptionPost p")
+    Stream<AdoptionPostIndexEntry> streamIndexEntries();
+
+    /**
+     * Finds the searchable fields of the given posts.
+     *
+     * @param ids post IDs
+     * @return the index entries of the posts found
+     */
+    @Query("select new org.example.adoptionpostservice.dto.AdoptionPostIndexEntry("
+            + "p.id, p.species, p.breed, p.gender, p.age, p.color, p.location, p.active, p.publicationDate, "
+            + "p.latitude, p.longitude, p.name, p.description) "
+            + "from AdoptionPost p where p.id in :ids")
+    List<AdoptionPostIndexEntry> findIndexEntriesByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Marks a post as adopted with a single conditional update, only if it is still active.
+     * Concurrent acceptances of the same post are serialized by the row lock: only the first one succeeds.
+     *
+     * @param id        post ID
+     * @param adopterId adopter ID
+     * @return 1 if the post has been adopted, 0 if it does not exist or was already adopted
+     */
+    @Modifying
+    @Query("update AdoptionPost p set p.adopterId = :adopterId, p.active = false, p.version = p.version + 1 "
+            + "where p.id = :id and p.active = true")
+    int markAdopted(@Param("id") Long id, @Param("adopterId") Long adopterId);
 
-    Page<AdoptionPost> findByOwnerId(Long ownerId, Pageable pageable);
-    Page<AdoptionPost> findByAdopterId(Long adopterId, Pageable pageable);
+    /**
+     * Finds the posts with a location that has not been geocoded yet.
+     *
+     * @return the posts to geocode
+     */
+    List<AdoptionPost> findByLatitudeIsNullAndLocationIsNotNull();
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package org.example.adoptionpostservice.repository;
+
+import org.example.adoptionpostservice.dto.AdoptionPostDetailDto;
+import org.example.adoptionpostservice.dto.SearchCursor;
+import org.example.adoptionpostservice.model.AdoptionPost;
+import org.example.shareddtos.dto.AdoptionPostSummaryDto;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Custom repository fragment with queries that read only part of the AdoptionPost columns.
+ */
+public interface AdoptionPostRepositoryCustom {
+
+    /**
+     * Finds the posts matching a specification, selecting only the columns needed by the summary DTO.
+     * No entity is loaded into the persistence context.
+     *
+     * @param spec     filters to apply (may be null)
+     * @param pageable pagination and sorting information
+     * @return a page of AdoptionPost summaries
+     */
+    Page<AdoptionPostSummaryDto> findSummaries(Specification<AdoptionPost> spec, Pageable pageable);
+
+    /**
+     * Same as {@link #findSummaries(Specification, Pageable)}, selecting only some of the summary columns.
+     *
+     * @param spec     filters to apply (may be null)
+     * @param pageable pagination and sorting information
+     * @param fields   summary properties to read (the ID is always read), or null for all of them
+     * @return a page of AdoptionPost summaries, with the other properties null
+     */
+    Page<AdoptionPostSummaryDto> findSummaries(Specification<AdoptionPost> spec, Pageable pageable, Set<String> fields);
+
+    /**
+     * Finds the posts matching a specification that come after a cursor, in keyset order
+     * (publicationDate descending, then id descending), selecting only the summary columns.
+     * The position is resolved by the index on (publicationDate, id), so no rows are skipped
+     * and no count query is executed.
+     *
+     * @param spec  filters to apply (may be null)
+     * @param after cursor of the last post already returned, or null to start from the newest post
+     * @param limit maximum number of posts to return
+     * @return the matching AdoptionPost summaries, in keyset order
+     */
+    List<AdoptionPostSummaryDto> findSummariesAfter(Specification<AdoptionPost> spec, SearchCursor after, int limit);
+
+    /**
+     * Counts the posts matching a specification.
+     *
+     * @param spec filters to apply (may be null)
+     * @return number of matching posts
+     */
+    long countMatching(Specification<AdoptionPost> spec);
+
+    /**
+     * Finds the summaries of the posts with the given IDs, selecting only the summary columns.
+     *
+     * @param ids post IDs
+     * @return the summaries of the existing posts, in no particular order
+     */
+    List<AdoptionPostSummaryDto> findSummariesByIds(Collection<Long> ids);
+
+    /**
+     * Same as {@link #findSummariesByIds(Collection)}, selecting only some of the summary columns.
+     *
+     * @param ids    post IDs
+     * @param fields summary properties to read (the ID is always read), or null for all of them
+     * @return the summaries of the existing posts, in no particular order
+     */
+    List<AdoptionPostSummaryDto> findSummariesByIds(Collection<Long> ids, Set<String> fields);
+
+    /**
+     * Finds the detail of a post, selecting only some of its columns.
+     *
+     * @param id     post ID
+     * @param fields detail properties to read (the ID is always read)
+     * @return the AdoptionPost detail, with the other properties null, or empty if not found
+     */
+    Optional<AdoptionPostDetailDto> findDetailById(Long id, Set<String> fields);
+
+    /**
+     * Counts the posts matching a specification, grouped by the value of an attribute.
+     *
+     * @param spec      filters to apply (may be null)
+     * @param attribute name of the AdoptionPost attribute to group by
+     * @return the number of matching posts for each (non-null) value of the attribute
+     */
+    Map<String, Long> countByValue(Specification<AdoptionPost> spec, String attribute);
+
+    /**
+     * Streams the details of the posts matching a specification, ordered by ID, through a database cursor
+     * that reads fetchSize rows at a time, so that any number of posts can be read in constant memory.
+     * Must be called inside a transaction, and the stream must be closed.
+     *
+     * @param spec       filters to apply (may be null)
+     * @param withImages whether to read the image key and placeholder columns
+     * @param fetchSize  number of rows read from the cursor at a time
+     * @return a stream of AdoptionPost details
+     */
+    Stream<AdoptionPostDetailDto> streamDetails(Specification<AdoptionPost> spec, boolean withImages, int fetchSize);
+}
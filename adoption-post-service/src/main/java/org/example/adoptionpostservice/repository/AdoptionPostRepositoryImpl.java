@@ -0,0 +1,295 @@
+package org.example.adoptionpostservice.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.example.adoptionpostservice.dto.AdoptionPostDetailDto;
+import org.example.adoptionpostservice.dto.SearchCursor;
+import org.example.adoptionpostservice.model.AdoptionPost;
+import org.example.shareddtos.dto.AdoptionPostSummaryDto;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of {@link AdoptionPostRepositoryCustom} based on Criteria tuple queries.
+ */
+public class AdoptionPostRepositoryImpl implements AdoptionPostRepositoryCustom {
+
+    // Columns read to build an AdoptionPostSummaryDto
+    private static final List<String> SUMMARY_COLUMNS = List.of(
+            "id", "name", "publicationDate", "species", "breed", "age", "gender",
+            "color", "location", "active", "imageKey", "imagePlaceholder");
+
+    // Columns read to build an AdoptionPostDetailDto, without the image columns
+    private static final List<String> DETAIL_COLUMNS = List.of(
+            "id", "name", "description", "publicationDate", "species", "breed", "gender", "age",
+            "color", "location", "ownerId", "active", "adopterId", "version");
+
+    private static final List<String> IMAGE_COLUMNS = List.of("imageKey", "imagePlaceholder");
+
+    private static final List<String> ALL_DETAIL_COLUMNS = concat(DETAIL_COLUMNS, IMAGE_COLUMNS);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<AdoptionPostSummaryDto> findSummaries(Specification<AdoptionPost> spec, Pageable pageable) {
+        return findSummaries(spec, pageable, null);
+    }
+
+    @Override
+    public Page<AdoptionPostSummaryDto> findSummaries(Specification<AdoptionPost> spec, Pageable pageable,
+                                                      Set<String> fields) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<AdoptionPost> root = query.from(AdoptionPost.class);
+        List<String> columns = select(SUMMARY_COLUMNS, fields);
+        query.multiselect(selections(root, columns));
+        Predicate predicate = toPredicate(spec, root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        List<AdoptionPostSummaryDto> content = typedQuery.getResultList().stream()
+                .map(tuple -> toSummaryDto(tuple, columns))
+                .toList();
+
+        // the count query is skipped when the total can be deduced from the page itself
+        return PageableExecutionUtils.getPage(content, pageable, () -> countMatching(spec));
+    }
+
+    @Override
+    public List<AdoptionPostSummaryDto> findSummariesAfter(Specification<AdoptionPost> spec, SearchCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<AdoptionPost> root = query.from(AdoptionPost.class);
+        query.multiselect(summarySelections(root));
+        List<Predicate> predicates = new ArrayList<>();
+        Predicate predicate = toPredicate(spec, root, query, cb);
+        if (predicate != null) {
+            predicates.add(predicate);
+        }
+        if (after != null) {
+            // (publicationDate, id) < (after.publicationDate, after.id); the first condition is implied by the
+            // second, but only a plain bound on publicationDate lets the index scan start at the cursor
+            predicates.add(cb.lessThanOrEqualTo(root.<LocalDateTime>get("publicationDate"), after.publicationDate()));
+            predicates.add(cb.or(
+                    cb.lessThan(root.<LocalDateTime>get("publicationDate"), after.publicationDate()),
+                    cb.and(
+                            cb.equal(root.get("publicationDate"), after.publicationDate()),
+                            cb.lessThan(root.<Long>get("id"), after.id()))));
+        }
+        query.where(predicates.toArray(new Predicate[0]));
+        query.orderBy(cb.desc(root.get("publicationDate")), cb.desc(root.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList().stream()
+                .map(tuple -> toSummaryDto(tuple, SUMMARY_COLUMNS))
+                .toList();
+    }
+
+    @Override
+    public List<AdoptionPostSummaryDto> findSummariesByIds(Collection<Long> ids) {
+        return findSummariesByIds(ids, null);
+    }
+
+    @Override
+    public List<AdoptionPostSummaryDto> findSummariesByIds(Collection<Long> ids, Set<String> fields) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<AdoptionPost> root = query.from(AdoptionPost.class);
+        List<String> columns = select(SUMMARY_COLUMNS, fields);
+        query.multiselect(selections(root, columns));
+        query.where(root.get("id").in(ids));
+
+        return entityManager.createQuery(query).getResultList().stream()
+                .map(tuple -> toSummaryDto(tuple, columns))
+                .toList();
+    }
+
+    @Override
+    public Optional<AdoptionPostDetailDto> findDetailById(Long id, Set<String> fields) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<AdoptionPost> root = query.from(AdoptionPost.class);
+        List<String> columns = select(ALL_DETAIL_COLUMNS, fields);
+        query.multiselect(selections(root, columns));
+        query.where(cb.equal(root.get("id"), id));
+
+        return entityManager.createQuery(query).getResultStream()
+                .findFirst()
+                .map(tuple -> toDetailDto(tuple, columns));
+    }
+
+    @Override
+    public long countMatching(Specification<AdoptionPost> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<AdoptionPost> root = query.from(AdoptionPost.class);
+        query.select(cb.count(root));
+        Predicate predicate = toPredicate(spec, root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    @Override
+    public Map<String, Long> countByValue(Specification<AdoptionPost> spec, String attribute) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<AdoptionPost> root = query.from(AdoptionPost.class);
+        Path<String> value = root.get(attribute);
+        query.multiselect(value.alias("value"), cb.count(root).alias("count"));
+        List<Predicate> predicates = new ArrayList<>();
+        Predicate predicate = toPredicate(spec, root, query, cb);
+        if (predicate != null) {
+            predicates.add(predicate);
+        }
+        predicates.add(cb.isNotNull(value));
+        query.where(predicates.toArray(new Predicate[0]));
+        query.groupBy(value);
+
+        Map<String, Long> counts = new HashMap<>();
+        for (Tuple tuple : entityManager.createQuery(query).getResultList()) {
+            counts.put(tuple.get("value", String.class), tuple.get("count", Long.class));
+        }
+        return counts;
+    }
+
+    @Override
+    public Stream<AdoptionPostDetailDto> streamDetails(Specification<AdoptionPost> spec, boolean withImages,
+                                                       int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<AdoptionPost> root = query.from(AdoptionPost.class);
+        List<String> columns = withImages ? ALL_DETAIL_COLUMNS : DETAIL_COLUMNS;
+        query.multiselect(selections(root, columns));
+        Predicate predicate = toPredicate(spec, root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.asc(root.get("id")));
+
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream()
+                .map(tuple -> toDetailDto(tuple, columns));
+    }
+
+    private static List<Selection<?>> summarySelections(Root<AdoptionPost> root) {
+        return selections(root, SUMMARY_COLUMNS);
+    }
+
+    /**
+     * Restricts a list of columns to the selected fields, always keeping the ID.
+     *
+     * @param columns the available columns
+     * @param fields  the selected fields, or null to keep all the columns
+     * @return the columns to read
+     */
+    private static List<String> select(List<String> columns, Set<String> fields) {
+        return fields == null
+                ? columns
+                : columns.stream().filter(column -> column.equals("id") || fields.contains(column)).toList();
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> all = new ArrayList<>(first);
+        all.addAll(second);
+        return List.copyOf(all);
+    }
+
+    // reads a column of the tuple if it was selected, null otherwise
+    private static <T> T get(Tuple tuple, List<String> columns, String column, Class<T> type) {
+        return columns.contains(column) ? tuple.get(column, type) : null;
+    }
+
+    private static List<Selection<?>> selections(Root<AdoptionPost> root, List<String> columns) {
+        return columns.stream()
+                .<Selection<?>>map(column -> root.get(column).alias(column))
+                .toList();
+    }
+
+    private static Predicate toPredicate(Specification<AdoptionPost> spec, Root<AdoptionPost> root,
+                                         CriteriaQuery<?> query, CriteriaBuilder cb) {
+        return spec != null ? spec.toPredicate(root, query, cb) : null;
+    }
+
+    private static AdoptionPostSummaryDto toSummaryDto(Tuple tuple, List<String> columns) {
+        AdoptionPostSummaryDto dto = new AdoptionPostSummaryDto();
+        dto.setId(tuple.get("id", Long.class));
+        dto.setName(get(tuple, columns, "name", String.class));
+        dto.setPublicationDate(get(tuple, columns, "publicationDate", LocalDateTime.class));
+        dto.setSpecies(get(tuple, columns, "species", String.class));
+        dto.setBreed(get(tuple, columns, "breed", String.class));
+        dto.setAge(get(tuple, columns, "age", Integer.class));
+        dto.setGender(get(tuple, columns, "gender", String.class));
+        dto.setColor(get(tuple, columns, "color", String.class));
+        dto.setLocation(get(tuple, columns, "location", String.class));
+        dto.setActive(get(tuple, columns, "active", Boolean.class));
+        dto.setImageKey(get(tuple, columns, "imageKey", String.class));
+        dto.setImagePlaceholder(get(tuple, columns, "imagePlaceholder", String.class));
+        return dto;
+    }
+
+    private static AdoptionPostDetailDto toDetailDto(Tuple tuple, List<String> columns) {
+        AdoptionPostDetailDto dto = new AdoptionPostDetailDto();
+        dto.setId(tuple.get("id", Long.class));
+        dto.setName(get(tuple, columns, "name", String.class));
+        dto.setDescription(get(tuple, columns, "description", String.class));
+        dto.setPublicationDate(get(tuple, columns, "publicationDate", LocalDateTime.class));
+        dto.setSpecies(get(tuple, columns, "species", String.class));
+        dto.setBreed(get(tuple, columns, "breed", String.class));
+        dto.setGender(get(tuple, columns, "gender", String.class));
+        dto.setAge(get(tuple, columns, "age", Integer.class));
+        dto.setColor(get(tuple, columns, "color", String.class));
+        dto.setLocation(get(tuple, columns, "location", String.class));
+        dto.setOwnerId(get(tuple, columns, "ownerId", Long.class));
+        dto.setActive(get(tuple, columns, "active", Boolean.class));
+        dto.setAdopterId(get(tuple, columns, "adopterId", Long.class));
+        dto.setVersion(get(tuple, columns, "version", Long.class));
+        dto.setImageKey(get(tuple, columns, "imageKey", String.class));
+        dto.setImagePlaceholder(get(tuple, columns, "imagePlaceholder", String.class));
+        return dto;
+    }
+}
@@ -1,10 +1,14 @@
 package org.example.adoptionpostservice.repository;
 
+import org.example.adoptionpostservice.dto.GeoPoint;
 import org.example.adoptionpostservice.model.AdoptionPost;
 import org.springframework.data.jpa.domain.Specification;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 /**
  * Specification class to build dynamic filters for AdoptionPost entities.
@@ -69,4 +73,75 @@ public class AdoptionPostSpecification {
             return cb.and(predicates.toArray(new Predicate[0]));
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * Builds a Specification matching the posts whose name or description contains at least one of the terms.
+     * Used when the in-memory full-text index is not available: matching is a case-insensitive substring search
+     * of the (stemmed) terms, and results are not ranked.
+     *
+     * @param terms the terms to look for
+     * @return a Specification to be used with the repository
+     */
+    public static Specification<AdoptionPost> matchingText(Collection<String> terms) {
+        return (root, query, cb) -> {
+            if (terms == null || terms.isEmpty()) {
+                return cb.conjunction();
+            }
+            List<Predicate> predicates = new ArrayList<>();
+            for (String term : terms) {
+                String pattern = "%" + term.toLowerCase() + "%";
+                predicates.add(cb.like(cb.lower(root.get("name")), pattern));
+                predicates.add(cb.like(cb.lower(root.get("description")), pattern));
+            }
+            return cb.or(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Builds a Specification matching the posts located within a distance from a point.
+     * Distances are approximated with an equirectangular projection centered on the point,
+     * accurate enough at the scale of a province; the bounding box lets the database use the coordinates index.
+     *
+     * @param latitude  latitude of the center, in degrees
+     * @param longitude longitude of the center, in degrees
+     * @param radiusKm  maximum distance, in kilometers
+     * @return a Specification to be used with the repository
+     */
+    public static Specification<AdoptionPost> withinRadius(double latitude, double longitude, double radiusKm) {
+        double latDelta = radiusKm / GeoPoint.KM_PER_DEGREE;
+        double cosLat = Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        double lonDelta = latDelta / cosLat;
+        return (root, query, cb) -> {
+            Path<Double> lat = root.get("latitude");
+            Path<Double> lon = root.get("longitude");
+            // distance in degrees of latitude: dLat^2 + (dLon * cos(lat))^2 <= latDelta^2
+            Expression<Double> dLat = cb.diff(lat, latitude);
+            Expression<Double> dLon = cb.prod(cb.diff(lon, longitude), cosLat);
+            Expression<Double> squared = cb.sum(cb.prod(dLat, dLat), cb.prod(dLon, dLon));
+            return cb.and(
+                    cb.between(lat, latitude - latDelta, latitude + latDelta),
+                    cb.between(lon, longitude - lonDelta, longitude + lonDelta),
+                    cb.le(squared, latDelta * latDelta));
+        };
+    }
+
+    /**
+     * Builds a Specification matching the posts created by the given owner.
+     *
+     * @param ownerId owner ID
+     * @return a Specification to be used with the repository
+     */
+    public static Specification<AdoptionPost> ownedBy(Long ownerId) {
+        return (root, query, cb) -> cb.equal(root.get("ownerId"), ownerId);
+    }
+
+    /**
+     * Builds a Specification matching the posts adopted by the given adopter.
+     *
+     * @param adopterId adopter ID
+     * @return a Specification to be used with the repository
+     */
+    public static Specification<AdoptionPost> adoptedBy(Long adopterId) {
+        return (root, query, cb) -> cb.equal(root.get("adopterId"), adopterId);
+    }
+}
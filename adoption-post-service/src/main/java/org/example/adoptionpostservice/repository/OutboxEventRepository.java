@@ -0,0 +1,45 @@
+package org.example.adoptionpostservice.repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.example.adoptionpostservice.model.OutboxEvent;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository interface for OutboxEvent entities.
+ */
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Locks the oldest events not sent yet, skipping those already locked by another replica
+     * (SELECT ... FOR UPDATE SKIP LOCKED), so that replicas relay disjoint batches.
+     * Must be called inside a transaction.
+     *
+     * @param pageable maximum number of events
+     * @return the locked events, oldest first
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = AvailableSettings.JAKARTA_LOCK_TIMEOUT, value = "-2")) // -2 = SKIP LOCKED
+    @Query("select e from OutboxEvent e where e.sentAt is null order by e.id")
+    List<OutboxEvent> lockUnsent(Pageable pageable);
+
+    /**
+     * Deletes the events sent before the given time.
+     *
+     * @param before time limit
+     * @return number of deleted events
+     */
+    @Modifying
+    @Query("delete from OutboxEvent e where e.sentAt < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
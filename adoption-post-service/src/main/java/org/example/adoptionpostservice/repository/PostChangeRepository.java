@@ -0,0 +1,51 @@
+package org.example.adoptionpostservice.repository;
+
+import org.example.adoptionpostservice.model.PostChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Repository interface for PostChange entities.
+ */
+public interface PostChangeRepository extends JpaRepository<PostChange, Long> {
+
+    /**
+     * Finds the changes that come after a sequence number, in sequence order.
+     *
+     * @param since    sequence number of the last change already read
+     * @param pageable maximum number of changes
+     * @return the changes
+     */
+    @Query("select c from PostChange c where c.seq > :since order by c.seq")
+    List<PostChange> findAfter(@Param("since") long since, Pageable pageable);
+
+    /**
+     * Records a change for every post that has none, e.g. posts saved before the change feed existed
+     * or written directly to the repository.
+     *
+     * @return number of recorded changes
+     */
+    @Transactional
+    @Modifying
+    @Query("insert into PostChange (postId, deleted, changedAt) "
+            + "select p.id, false, current_timestamp from AdoptionPost p "
+            + "where not exists (select 1 from PostChange c where c.postId = p.id)")
+    int recordMissing();
+
+    /**
+     * Deletes the changes superseded by a later change to the same post:
+     * a client reading the feed only needs the last change of each post.
+     *
+     * @return number of deleted changes
+     */
+    @Modifying
+    @Query("delete from PostChange c where exists "
+            + "(select 1 from PostChange n where n.postId = c.postId and n.seq > c.seq)")
+    int deleteSuperseded();
+}
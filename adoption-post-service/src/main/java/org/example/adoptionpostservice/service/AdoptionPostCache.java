@@ -0,0 +1,152 @@
+package org.example.adoptionpostservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.example.adoptionpostservice.dto.AdoptionPostDetailDto;
+import org.example.adoptionpostservice.dto.AdoptionPostIndexEntry;
+import org.example.shareddtos.dto.AdoptionPostSearchDto;
+import org.example.shareddtos.dto.AdoptionPostSummaryDto;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.example.adoptionpostservice.config.CacheConfig.POST_DETAILS_CACHE;
+import static org.example.adoptionpostservice.config.CacheConfig.SEARCH_PAGES_CACHE;
+
+/**
+ * Read-through cache of post details and of the first pages of searches.
+ * Entries are evicted precisely when a post changes: its detail, and only the search pages
+ * whose filters match the post before or after the change (the only pages the change can affect).
+ */
+@Component
+public class AdoptionPostCache {
+
+    // only the first pages of a search are cached, they get most of the traffic
+    private static final int HOT_PAGES = 3;
+
+    private static final int MAX_CACHED_PAGE_SIZE = 100;
+
+    /**
+     * Key of a cached search page. Two keys are equal if they have the same normalized filters,
+     * page and sort; the filters are kept to check which pages a post change affects.
+     *
+     * @param filterKey normalized filters
+     * @param filter    the filters (place names resolved to coordinates)
+     * @param page      page number
+     * @param size      page size
+     * @param sort      sort order
+     */
+    public record SearchPageKey(String filterKey, AdoptionPostSearchDto filter, int page, int size, String sort) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SearchPageKey other
+                    && filterKey.equals(other.filterKey) && page == other.page
+                    && size == other.size && sort.equals(other.sort);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(filterKey, page, size, sort);
+        }
+    }
+
+    private final Cache<Object, Object> postDetails;
+
+    private final Cache<Object, Object> searchPages;
+
+    // incremented by every eviction: a search page loaded while it changes may have been read before the change,
+    // and evict cannot find it while it is loading
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param cacheManager the cache manager holding the Caffeine caches
+     */
+    @SuppressWarnings("unchecked")
+    public AdoptionPostCache(CacheManager cacheManager) {
+        this.postDetails = (Cache<Object, Object>) Objects.requireNonNull(
+                cacheManager.getCache(POST_DETAILS_CACHE)).getNativeCache();
+        this.searchPages = (Cache<Object, Object>) Objects.requireNonNull(
+                cacheManager.getCache(SEARCH_PAGES_CACHE)).getNativeCache();
+    }
+
+    /**
+     * Returns the cached detail of a post, loading it on a miss.
+     * Exceptions thrown by the loader are propagated and nothing is cached.
+     *
+     * @param postId post ID
+     * @param loader loads the detail from the database
+     * @return the post detail
+     */
+    public AdoptionPostDetailDto getDetail(Long postId, Supplier<AdoptionPostDetailDto> loader) {
+        return (AdoptionPostDetailDto) postDetails.get(postId, id -> loader.get());
+    }
+
+    /**
+     * Returns the details of the given posts that are in the cache, without loading the others.
+     *
+     * @param postIds post IDs
+     * @return the cached details, by post ID
+     */
+    public Map<Long, AdoptionPostDetailDto> getCachedDetails(Iterable<Long> postIds) {
+        Map<Long, AdoptionPostDetailDto> details = new HashMap<>();
+        postDetails.getAllPresent(postIds)
+                .forEach((id, detail) -> details.put((Long) id, (AdoptionPostDetailDto) detail));
+        return details;
+    }
+
+    /**
+     * Returns a cached search page, running the search on a miss.
+     * Pages beyond the first HOT_PAGES, or larger than MAX_CACHED_PAGE_SIZE, are never cached,
+     * nor pages loaded while a post changes (see {@link #evict}).
+     *
+     * @param filterKey normalized filters
+     * @param filter    the filters (place names resolved to coordinates)
+     * @param pageable  pagination information
+     * @param loader    runs the search
+     * @return the search page
+     */
+    @SuppressWarnings("unchecked")
+    public Page<AdoptionPostSummaryDto> getSearchPage(String filterKey, AdoptionPostSearchDto filter, Pageable pageable,
+                                                      Supplier<Page<AdoptionPostSummaryDto>> loader) {
+        if (pageable.isUnpaged() || pageable.getPageNumber() >= HOT_PAGES
+                || pageable.getPageSize() > MAX_CACHED_PAGE_SIZE) {
+            return loader.get();
+        }
+        SearchPageKey key = new SearchPageKey(filterKey, filter, pageable.getPageNumber(), pageable.getPageSize(),
+                pageable.getSort().toString());
+        long evictionsBefore = evictions.get();
+        Page<AdoptionPostSummaryDto> page = (Page<AdoptionPostSummaryDto>) searchPages.get(key, k -> loader.get());
+        if (evictions.get() != evictionsBefore) {
+            // a post changed meanwhile: the page may be stale, and is not kept whether the change affects it or not
+            searchPages.invalidate(key);
+        }
+        return page;
+    }
+
+    /**
+     * Evicts the entries affected by a change to a post.
+     *
+     * @param postId post ID
+     * @param before the post before the change (null if created)
+     * @param after  the post after the change (null if deleted)
+     */
+    public void evict(Long postId, AdoptionPostIndexEntry before, AdoptionPostIndexEntry after) {
+        postDetails.invalidate(postId);
+        // before scanning the pages: a page still loading is evicted by getSearchPage when its load ends
+        evictions.incrementAndGet();
+        searchPages.asMap().keySet().removeIf(key -> {
+            AdoptionPostSearchDto filter = ((SearchPageKey) key).filter();
+            return (before != null && AdoptionPostIndex.matches(filter, before))
+                    || (after != null && AdoptionPostIndex.matches(filter, after));
+        });
+    }
+}
@@ -0,0 +1,529 @@
+package org.example.adoptionpostservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.example.adoptionpostservice.dto.AdoptionPostImportResultDto;
+import org.example.adoptionpostservice.dto.AdoptionPostImportRow;
+import org.example.adoptionpostservice.dto.AdoptionPostIndexEntry;
+import org.example.adoptionpostservice.dto.GeoPoint;
+import org.example.adoptionpostservice.model.AdoptionPost;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Imports many adoption posts at once from an NDJSON or CSV file, with their images in a zip archive.
+ * The file is read one row at a time: each row is validated as soon as it is read, and valid rows
+ * are inserted in chunks, each with a single JDBC batch and its own transaction,
+ * together with the outbox messages announcing the new posts.
+ * Only the images referenced by valid rows are stored, and only if they are images: the archive is checked
+ * first against limits on its entries and on its size once extracted, before anything is stored.
+ */
+@Service
+public class AdoptionPostImportService {
+
+    private static final String INSERT_POST = "insert into %s.adoption_posts "
+            + "(id, name, description, publication_date, species, breed, gender, age, color, location, "
+            + "latitude, longitude, owner_id, active, image_key, image_placeholder, version) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, true, ?, ?, 0)";
+
+    // reserves blocks of IDs from the sequence also used by Hibernate (see AdoptionPost)
+    private static final String NEXT_ID_BLOCKS = "select nextval('%s.data_seq') from generate_series(1, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    private final ImageStorageService imageStorageService;
+
+    private final ImageProcessingService imageProcessingService;
+
+    private final GazetteerService gazetteerService;
+
+    private final RabbitMQService rabbitMQService;
+
+    private final PostChangeService postChangeService;
+
+    private final String insertPost;
+
+    private final String nextIdBlocks;
+
+    private final int chunkSize;
+
+    private final int maxArchiveEntries;
+
+    private final DataSize maxArchiveSize;
+
+    private final int maxImageBytes;
+
+    /**
+     * An image of the archive, stored in the image store.
+     *
+     * @param key         key of the image
+     * @param placeholder placeholder of the image (null if it cannot be decoded)
+     */
+    private record StoredImage(String key, String placeholder) {
+    }
+
+    /**
+     * A valid row waiting to be inserted.
+     *
+     * @param row  row number
+     * @param post the post to insert
+     */
+    private record PendingPost(int row, AdoptionPost post) {
+    }
+
+    public AdoptionPostImportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                     ObjectMapper objectMapper, Validator validator,
+                                     ImageStorageService imageStorageService,
+                                     ImageProcessingService imageProcessingService,
+                                     GazetteerService gazetteerService, RabbitMQService rabbitMQService,
+                                     PostChangeService postChangeService,
+                                     @Value("${spring.jpa.properties.hibernate.default_schema}") String schema,
+                                     @Value("${app.import.chunk-size:200}") int chunkSize,
+                                     @Value("${app.import.max-archive-entries:10000}") int maxArchiveEntries,
+                                     @Value("${app.import.max-archive-size:1GB}") DataSize maxArchiveSize,
+                                     @Value("${app.import.max-image-size:10MB}") DataSize maxImageSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.imageStorageService = imageStorageService;
+        this.imageProcessingService = imageProcessingService;
+        this.gazetteerService = gazetteerService;
+        this.rabbitMQService = rabbitMQService;
+        this.postChangeService = postChangeService;
+        this.insertPost = INSERT_POST.formatted(schema);
+        this.nextIdBlocks = NEXT_ID_BLOCKS.formatted(schema);
+        this.chunkSize = chunkSize;
+        this.maxArchiveEntries = maxArchiveEntries;
+        this.maxArchiveSize = maxArchiveSize;
+        this.maxImageBytes = Math.toIntExact(maxImageSize.toBytes());
+    }
+
+    /**
+     * Imports the posts of a file. Rows are CSV records (with a header naming the columns)
+     * if the file name ends with ".csv" or its content type is text/csv, NDJSON lines otherwise;
+     * their fields are those of {@link AdoptionPostImportRow}.
+     * Invalid rows are rejected and reported, without stopping the import of the others.
+     * The posts file is read twice: first to find the images referenced by the valid rows, which are the only
+     * ones stored, then to import the rows.
+     *
+     * @param postsFile  the posts to import
+     * @param imagesFile zip archive with the images referenced by the rows (optional)
+     * @param ownerId    owner of the imported posts
+     * @return the outcome of every row
+     * @throws IOException if the files cannot be read (including a malformed zip archive)
+     * @throws IllegalArgumentException if the archive has too many entries or is too large once extracted
+     */
+    public AdoptionPostImportResultDto importPosts(MultipartFile postsFile, MultipartFile imagesFile, Long ownerId)
+            throws IOException {
+        Map<String, StoredImage> images = imagesFile != null && !imagesFile.isEmpty()
+                ? storeImages(imagesFile, referencedImages(postsFile))
+                : Map.of();
+
+        List<AdoptionPostImportResultDto.Row> results = new ArrayList<>();
+        List<PendingPost> chunk = new ArrayList<>(chunkSize);
+        try (Reader reader = new InputStreamReader(postsFile.getInputStream(), StandardCharsets.UTF_8)) {
+            RowReader rows = openRows(postsFile, reader);
+            RawRow raw;
+            while ((raw = rows.next()) != null) {
+                List<String> errors = new ArrayList<>(raw.errors());
+                AdoptionPost post = errors.isEmpty() ? toPost(raw.fields(), images, ownerId, errors) : null;
+                if (post == null) {
+                    results.add(new AdoptionPostImportResultDto.Row(raw.number(), null, errors));
+                    continue;
+                }
+                chunk.add(new PendingPost(raw.number(), post));
+                if (chunk.size() == chunkSize) {
+                    insertChunk(chunk, results);
+                    chunk.clear();
+                }
+            }
+        }
+        insertChunk(chunk, results);
+
+        int created = (int) results.stream().filter(row -> row.getPostId() != null).count();
+        return new AdoptionPostImportResultDto(created, results.size() - created, results);
+    }
+
+    /**
+     * Finds the images referenced by the valid rows of a file.
+     *
+     * @param postsFile the posts to import
+     * @return the entry names of the images
+     * @throws IOException if the file cannot be read
+     */
+    private Set<String> referencedImages(MultipartFile postsFile) throws IOException {
+        Set<String> names = new HashSet<>();
+        try (Reader reader = new InputStreamReader(postsFile.getInputStream(), StandardCharsets.UTF_8)) {
+            RowReader rows = openRows(postsFile, reader);
+            RawRow raw;
+            while ((raw = rows.next()) != null) {
+                List<String> errors = new ArrayList<>(raw.errors());
+                AdoptionPostImportRow row = errors.isEmpty() ? readRow(raw.fields(), errors) : null;
+                if (row != null && errors.isEmpty() && row.getImage() != null && !row.getImage().isBlank()) {
+                    names.add(row.getImage());
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Stores the images of a zip archive referenced by the rows, one entry at a time, after checking the archive.
+     * Other entries (e.g. __MACOSX/ metadata) are skipped, and so are the entries that are not images
+     * or are larger than the image size limit.
+     *
+     * @param imagesFile the zip archive
+     * @param referenced the entry names referenced by the rows
+     * @return by entry name, the stored images, or null for the referenced entries that are not images
+     * @throws IOException if the archive cannot be read
+     * @throws IllegalArgumentException if the archive has too many entries or is too large once extracted
+     */
+    private Map<String, StoredImage> storeImages(MultipartFile imagesFile, Set<String> referenced)
+            throws IOException {
+        Map<String, StoredImage> images = new HashMap<>();
+        if (referenced.isEmpty()) {
+            return images;
+        }
+        checkArchive(imagesFile);
+        try (ZipInputStream zip = new ZipInputStream(imagesFile.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory() || !referenced.contains(entry.getName())
+                        || images.containsKey(entry.getName())) {
+                    continue;
+                }
+                // read in memory to be checked before it is stored
+                byte[] content = zip.readNBytes(maxImageBytes + 1);
+                StoredImage image = null;
+                if (content.length <= maxImageBytes && imageProcessingService.isImage(content)) {
+                    String key = imageStorageService.store(new ByteArrayInputStream(content));
+                    image = new StoredImage(key, imageProcessingService.createVariants(key));
+                }
+                images.put(entry.getName(), image);
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Reads a whole zip archive without storing anything, to check its limits: a small archive
+     * can hold many entries, or entries much larger than their compressed size.
+     *
+     * @param imagesFile the zip archive
+     * @throws IOException if the archive cannot be read
+     * @throws IllegalArgumentException if the archive has too many entries or is too large once extracted
+     */
+    private void checkArchive(MultipartFile imagesFile) throws IOException {
+        int entries = 0;
+        long size = 0;
+        byte[] buffer = new byte[8192];
+        try (ZipInputStream zip = new ZipInputStream(imagesFile.getInputStream())) {
+            while (zip.getNextEntry() != null) {
+                if (++entries > maxArchiveEntries) {
+                    throw new IllegalArgumentException("Images archive with more than " + maxArchiveEntries
+                            + " entries");
+                }
+                int read;
+                while ((read = zip.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxArchiveSize.toBytes()) {
+                        throw new IllegalArgumentException("Images archive larger than " + maxArchiveSize
+                                + " once extracted");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts and validates a row.
+     *
+     * @param fields  the fields of the row
+     * @param images  the images of the archive, by entry name
+     * @param ownerId owner of the post
+     * @param errors  receives the validation errors
+     * @return the post to insert, or null if the row is not valid
+     */
+    private AdoptionPost toPost(JsonNode fields, Map<String, StoredImage> images, Long ownerId, List<String> errors) {
+        AdoptionPostImportRow row = readRow(fields, errors);
+        if (row == null) {
+            return null;
+        }
+        StoredImage image = null;
+        if (row.getImage() != null && !row.getImage().isBlank()) {
+            image = images.get(row.getImage());
+            if (!images.containsKey(row.getImage())) {
+                errors.add("image " + row.getImage() + " not found in the archive");
+            } else if (image == null) {
+                errors.add("image " + row.getImage() + " is not an image, or is larger than " + maxImageBytes
+                        + " bytes");
+            }
+        }
+        if (!errors.isEmpty()) {
+            return null;
+        }
+        Optional<GeoPoint> point = gazetteerService.locate(row.getLocation());
+        return AdoptionPost.builder()
+                .name(row.getName())
+                .description(row.getDescription())
+                .species(row.getSpecies())
+                .breed(row.getBreed())
+                .gender(row.getGender())
+                .age(row.getAge())
+                .color(row.getColor())
+                .location(row.getLocation())
+                .latitude(point.map(GeoPoint::latitude).orElse(null))
+                .longitude(point.map(GeoPoint::longitude).orElse(null))
+                .ownerId(ownerId)
+                .active(true)
+                .publicationDate(LocalDateTime.now())
+                .imageKey(image != null ? image.key() : null)
+                .imagePlaceholder(image != null ? image.placeholder() : null)
+                .version(0L)
+                .build();
+    }
+
+    /**
+     * Converts a row and checks its fields.
+     *
+     * @param fields the fields of the row
+     * @param errors receives the validation errors
+     * @return the row, or null if it cannot be converted
+     */
+    private AdoptionPostImportRow readRow(JsonNode fields, List<String> errors) {
+        AdoptionPostImportRow row;
+        try {
+            row = objectMapper.treeToValue(fields, AdoptionPostImportRow.class);
+        } catch (IOException | IllegalArgumentException e) {
+            errors.add("Malformed row: " + e.getMessage());
+            return null;
+        }
+        for (ConstraintViolation<AdoptionPostImportRow> violation : validator.validate(row)) {
+            errors.add(violation.getPropertyPath() + " " + violation.getMessage());
+        }
+        return row;
+    }
+
+    /**
+     * Inserts a chunk of posts with one JDBC batch and queues their new-post events, in one transaction.
+     * If the chunk cannot be inserted, all its rows are reported as rejected.
+     *
+     * @param chunk   the posts to insert
+     * @param results receives the outcome of every row
+     */
+    private void insertChunk(List<PendingPost> chunk, List<AdoptionPostImportResultDto.Row> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Long> ids = allocateIds(chunk.size());
+                for (int i = 0; i < chunk.size(); i++) {
+                    chunk.get(i).post().setId(ids.get(i));
+                }
+                jdbcTemplate.batchUpdate(insertPost, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setParameters(ps, chunk.get(i).post());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return chunk.size();
+                    }
+                });
+                for (PendingPost pending : chunk) {
+                    AdoptionPost post = pending.post();
+                    rabbitMQService.sendNewPostEvent(AdoptionPostService.toSummaryDto(post));
+                    postChangeService.postChanged(post.getId(), null, AdoptionPostIndexEntry.of(post));
+                }
+            });
+            for (PendingPost pending : chunk) {
+                results.add(new AdoptionPostImportResultDto.Row(pending.row(), pending.post().getId(), List.of()));
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Errore durante l'importazione di " + chunk.size() + " annunci: " + e.getMessage());
+            for (PendingPost pending : chunk) {
+                results.add(new AdoptionPostImportResultDto.Row(pending.row(), null,
+                        List.of("Could not be saved: " + e.getMessage())));
+            }
+        }
+    }
+
+    /**
+     * Reserves IDs for new posts, with the same layout as the pooled allocation of Hibernate:
+     * each value of the sequence ends a block of {@link AdoptionPost#ID_ALLOCATION_SIZE} IDs.
+     *
+     * @param count number of IDs needed
+     * @return the reserved IDs (at least count)
+     */
+    private List<Long> allocateIds(int count) {
+        int blocks = (count + AdoptionPost.ID_ALLOCATION_SIZE - 1) / AdoptionPost.ID_ALLOCATION_SIZE;
+        List<Long> ids = new ArrayList<>(blocks * AdoptionPost.ID_ALLOCATION_SIZE);
+        for (Long last : jdbcTemplate.queryForList(nextIdBlocks, Long.class, blocks)) {
+            for (long id = last - AdoptionPost.ID_ALLOCATION_SIZE + 1; id <= last; id++) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static void setParameters(PreparedStatement ps, AdoptionPost post) throws SQLException {
+        ps.setLong(1, post.getId());
+        ps.setString(2, post.getName());
+        ps.setString(3, post.getDescription());
+        ps.setTimestamp(4, Timestamp.valueOf(post.getPublicationDate()));
+        ps.setString(5, post.getSpecies());
+        ps.setString(6, post.getBreed());
+        ps.setString(7, post.getGender());
+        ps.setInt(8, post.getAge());
+        ps.setString(9, post.getColor());
+        ps.setString(10, post.getLocation());
+        ps.setObject(11, post.getLatitude(), Types.DOUBLE);
+        ps.setObject(12, post.getLongitude(), Types.DOUBLE);
+        ps.setLong(13, post.getOwnerId());
+        ps.setString(14, post.getImageKey());
+        ps.setString(15, post.getImagePlaceholder());
+    }
+
+    private RowReader openRows(MultipartFile postsFile, Reader reader) throws IOException {
+        return isCsv(postsFile) ? new CsvRowReader(reader) : new NdjsonRowReader(reader, objectMapper);
+    }
+
+    private static boolean isCsv(MultipartFile file) {
+        String name = file.getOriginalFilename();
+        return (name != null && name.toLowerCase().endsWith(".csv"))
+                || "text/csv".equalsIgnoreCase(file.getContentType());
+    }
+
+    /**
+     * A row read from the file.
+     *
+     * @param number row number
+     * @param fields the fields of the row (null if it could not be parsed)
+     * @param errors parse errors
+     */
+    private record RawRow(int number, JsonNode fields, List<String> errors) {
+    }
+
+    /**
+     * Reads the rows of a file one at a time.
+     */
+    private interface RowReader {
+
+        /**
+         * @return the next row, or null at the end of the file
+         * @throws IOException if the file cannot be read
+         */
+        RawRow next() throws IOException;
+    }
+
+    /**
+     * Reads one JSON object per line, skipping blank lines. A malformed line only rejects that row.
+     */
+    private static final class NdjsonRowReader implements RowReader {
+
+        private final BufferedReader reader;
+
+        private final ObjectMapper objectMapper;
+
+        private int lineNumber = 0;
+
+        NdjsonRowReader(Reader reader, ObjectMapper objectMapper) {
+            this.reader = new BufferedReader(reader);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        public RawRow next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                lineNumber++;
+            } while (line != null && line.isBlank());
+            if (line == null) {
+                return null;
+            }
+            try {
+                return new RawRow(lineNumber, objectMapper.readTree(line), List.of());
+            } catch (JsonProcessingException e) {
+                return new RawRow(lineNumber, null, List.of("Malformed JSON: " + e.getOriginalMessage()));
+            }
+        }
+    }
+
+    /**
+     * Reads CSV records, whose first line names the columns.
+     * The CSV syntax cannot be resynchronized after an error, so a malformed record ends the file.
+     */
+    private static final class CsvRowReader implements RowReader {
+
+        private static final CsvMapper CSV_MAPPER = new CsvMapper();
+
+        private final MappingIterator<JsonNode> records;
+
+        private int recordNumber = 0;
+
+        private boolean failed = false;
+
+        CsvRowReader(Reader reader) throws IOException {
+            this.records = CSV_MAPPER.readerFor(JsonNode.class)
+                    .with(CsvSchema.emptySchema().withHeader())
+                    .readValues(reader);
+        }
+
+        @Override
+        public RawRow next() {
+            if (failed) {
+                return null;
+            }
+            recordNumber++;
+            try {
+                return records.hasNextValue() ? new RawRow(recordNumber, records.nextValue(), List.of()) : null;
+            } catch (IOException | RuntimeException e) {
+                failed = true;
+                return new RawRow(recordNumber, null, List.of("Malformed CSV, import stopped: " + e.getMessage()));
+            }
+        }
+    }
+}
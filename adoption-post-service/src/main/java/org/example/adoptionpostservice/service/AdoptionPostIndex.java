@@ -0,0 +1,696 @@
+package org.example.adoptionpostservice.service;
+
+import org.example.adoptionpostservice.dto.AdoptionPostFacetsDto;
+import org.example.adoptionpostservice.dto.AdoptionPostIndexEntry;
+import org.example.adoptionpostservice.dto.GeoPoint;
+import org.example.adoptionpostservice.repository.AdoptionPostRepository;
+import org.example.shareddtos.dto.AdoptionPostSearchDto;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory search index over adoption posts.
+ * It keeps a compressed bitmap of post IDs for every value of every facet
+ * (species, breed, gender, color, location), one bitmap per age and a bitmap of the active posts,
+ * so a search is answered by intersecting bitmaps and the database is only queried to load the requested page.
+ * Name and description are also indexed for full-text search: every term produced by {@link ItalianAnalyzer}
+ * has a bitmap of the posts containing it, and free-text results are ranked with BM25.
+ * Geocoded posts are also placed in a grid of GRID_CELL_DEGREES cells, so a radius search only checks
+ * the exact distance of the posts in the cells overlapping the circle.
+ * Posts are also kept sorted by publication date, the default order of the results: IDs are allocated in blocks
+ * by each replica, and imported posts keep their own date, so a higher ID is not a newer post.
+ * <p>
+ * The index is built when the application is ready, updated on every change made by this replica,
+ * and periodically rebuilt from the database to pick up changes made elsewhere.
+ * Until the first build completes, {@link #search} returns empty and callers fall back to the database.
+ */
+@Component
+public class AdoptionPostIndex {
+
+    public static final String SPECIES = "species";
+    public static final String BREED = "breed";
+    public static final String GENDER = "gender";
+    public static final String COLOR = "color";
+    public static final String LOCATION = "location";
+
+    // BM25 parameters, and weight of a term in the name relative to the description
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_WEIGHT = 2;
+
+    // side of a cell of the spatial grid, in degrees (about 28 km of latitude)
+    private static final double GRID_CELL_DEGREES = 0.25;
+
+    /** Facets indexed with one bitmap per value */
+    public static final List<String> FACETS = List.of(SPECIES, BREED, GENDER, COLOR, LOCATION);
+
+    private final AdoptionPostRepository repository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // fields below are guarded by lock
+    private IndexData data = new IndexData();
+    private boolean ready = false;
+    private List<Consumer<IndexData>> pendingChanges = null; // changes received while a rebuild is running
+    private boolean pendingChangeFailed = false; // one of them could not be applied, nor can it be to the rebuilt index
+
+    /**
+     * Constructor
+     *
+     * @param repository the adoption post repository
+     * @param transactionManager used to stream the posts inside a transaction
+     */
+    public AdoptionPostIndex(AdoptionPostRepository repository, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        // not read-only, so the posts are read from the primary: a lagging replica could miss changes
+        // already applied to the index, which would then be lost until the next rebuild
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${app.search-index.rebuild-interval:PT5M}",
+            fixedDelayString = "${app.search-index.rebuild-interval:PT5M}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the whole index from the database and replaces the current one.
+     * Searches keep using the current index while the new one is built;
+     * changes received in the meantime are applied to both.
+     */
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+            pendingChangeFailed = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        IndexData rebuilt = new IndexData();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<AdoptionPostIndexEntry> entries = repository.streamIndexEntries()) {
+                    entries.forEach(rebuilt::put);
+                }
+            });
+        } catch (RuntimeException e) {
+            System.out.println("Errore durante la costruzione dell'indice di ricerca: " + e.getMessage());
+            lock.writeLock().lock();
+            try {
+                pendingChanges = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (pendingChangeFailed) {
+                System.out.println("Indice di ricerca non sostituito: una modifica non e' stata applicata");
+                return;
+            }
+            pendingChanges.forEach(change -> change.accept(rebuilt));
+            data = rebuilt;
+            ready = true;
+        } catch (RuntimeException e) {
+            System.out.println("Errore durante la costruzione dell'indice di ricerca: " + e.getMessage());
+            return;
+        } finally {
+            pendingChanges = null;
+            lock.writeLock().unlock();
+        }
+        System.out.println(">>> Search index built with " + rebuilt.entries.size() + " posts");
+    }
+
+    /**
+     * Adds a post to the index, or replaces it if already indexed.
+     *
+     * @param entry the searchable fields of the post
+     */
+    public void put(AdoptionPostIndexEntry entry) {
+        apply(index -> index.put(entry));
+    }
+
+    /**
+     * Removes a post from the index.
+     *
+     * @param postId post ID
+     */
+    public void remove(Long postId) {
+        apply(index -> index.remove(postId));
+    }
+
+    /**
+     * A page of search results.
+     *
+     * @param ids         IDs of the posts in the page, in result order
+     * @param total       number of posts matching the search
+     * @param distancesKm distance of each post of the page from the search center (empty if there is no center)
+     */
+    public record IndexPage(List<Long> ids, long total, Map<Long, Double> distancesKm) {}
+
+    /**
+     * Finds a page of the posts matching a search.
+     * Results are ordered by distance from the search center if byDistance is set (posts not geocoded come last),
+     * by relevance if the search has a free-text query, newest post first otherwise.
+     *
+     * @param filter     the search filters
+     * @param offset     number of results to skip
+     * @param size       maximum number of results to return
+     * @param byDistance whether to order the results by distance from the search center
+     * @return the page of results, or empty if the index is not available
+     */
+    public Optional<IndexPage> page(AdoptionPostSearchDto filter, long offset, int size, boolean byDistance) {
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                return Optional.empty();
+            }
+            RoaringBitmap matches = data.match(filter, null);
+            GeoPoint center = centerOf(filter);
+            Set<String> terms = queryTerms(filter);
+            List<Long> ids;
+            if (byDistance && center != null) {
+                ids = data.nearest(matches, center, offset, size);
+            } else if (!terms.isEmpty()) {
+                ids = data.rank(matches, terms, offset, size);
+            } else {
+                ids = data.newest(matches, offset, size);
+            }
+            Map<Long, Double> distances = new HashMap<>();
+            if (center != null) {
+                for (Long id : ids) {
+                    GeoPoint point = data.points.get(id.intValue());
+                    if (point != null) {
+                        distances.put(id, point.distanceKm(center));
+                    }
+                }
+            }
+            return Optional.of(new IndexPage(ids, matches.getLongCardinality(), distances));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts, for every facet, how many posts would match the search for each value of the facet.
+     * The filter on the facet itself is ignored, so the counts of the alternatives to the
+     * selected values are returned too; the filters on all the other facets are applied.
+     *
+     * @param filter the search filters
+     * @return the facet counts, or empty if the index is not available
+     */
+    public Optional<AdoptionPostFacetsDto> facetCounts(AdoptionPostSearchDto filter) {
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                return Optional.empty();
+            }
+            Map<String, Map<String, Long>> counts = new LinkedHashMap<>();
+            for (String facet : FACETS) {
+                counts.put(facet, data.countValues(facet, data.match(filter, facet)));
+            }
+            return Optional.of(new AdoptionPostFacetsDto(data.match(filter, null).getLongCardinality(), counts));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether a single post matches a search, with the same semantics as the index.
+     * If the search has a free-text query and the entry carries no text, the post is assumed to match.
+     *
+     * @param filter the search filters (place names must already be resolved to coordinates)
+     * @param post   the post
+     * @return true if the post matches (or may match) the search
+     */
+    public static boolean matches(AdoptionPostSearchDto filter, AdoptionPostIndexEntry post) {
+        for (String facet : FACETS) {
+            List<String> values = IndexData.filterValues(filter, facet);
+            if (values != null && !values.isEmpty() && !values.contains(IndexData.valueOf(post, facet))) {
+                return false;
+            }
+        }
+        if (filter.getMinAge() != null && (post.age() == null || post.age() < filter.getMinAge())) {
+            return false;
+        }
+        if (filter.getMaxAge() != null && (post.age() == null || post.age() > filter.getMaxAge())) {
+            return false;
+        }
+        if (Boolean.TRUE.equals(filter.getActiveOnly()) && !Boolean.TRUE.equals(post.active())) {
+            return false;
+        }
+        GeoPoint center = centerOf(filter);
+        if (center != null && filter.getRadiusKm() != null) {
+            if (post.latitude() == null || post.longitude() == null
+                    || new GeoPoint(post.latitude(), post.longitude()).distanceKm(center) > filter.getRadiusKm()) {
+                return false;
+            }
+        }
+        Set<String> terms = queryTerms(filter);
+        if (!terms.isEmpty() && (post.name() != null || post.description() != null)) {
+            List<String> postTerms = new ArrayList<>(ItalianAnalyzer.analyze(post.name()));
+            postTerms.addAll(ItalianAnalyzer.analyze(post.description()));
+            return postTerms.stream().anyMatch(terms::contains);
+        }
+        return true;
+    }
+
+    /**
+     * Analyzes the free-text query of a search.
+     *
+     * @param filter the search filters
+     * @return the distinct query terms (empty if there is no query)
+     */
+    private static Set<String> queryTerms(AdoptionPostSearchDto filter) {
+        return new LinkedHashSet<>(ItalianAnalyzer.analyze(filter.getQuery()));
+    }
+
+    /**
+     * Returns the center of the radius search, if the search has one.
+     *
+     * @param filter the search filters (place names must already be resolved to coordinates)
+     * @return the search center, or null
+     */
+    private static GeoPoint centerOf(AdoptionPostSearchDto filter) {
+        return filter.getLatitude() != null && filter.getLongitude() != null
+                ? new GeoPoint(filter.getLatitude(), filter.getLongitude())
+                : null;
+    }
+
+    private void apply(Consumer<IndexData> change) {
+        lock.writeLock().lock();
+        try {
+            try {
+                change.accept(data);
+            } catch (ArithmeticException e) {
+                // post ID beyond the bitmap range: searches fall back to the database
+                System.out.println("Indice di ricerca disabilitato: " + e.getMessage());
+                ready = false;
+                // not replayed by a rebuild running meanwhile, where it would fail again: the rebuilt index is dropped
+                if (pendingChanges != null) {
+                    pendingChangeFailed = true;
+                }
+                return;
+            }
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Bitmaps and indexed entries. Not thread safe: access is guarded by the enclosing index lock.
+     */
+    private static final class IndexData {
+
+        private final Map<String, Map<String, RoaringBitmap>> facets = new HashMap<>();
+        private final TreeMap<Integer, RoaringBitmap> ages = new TreeMap<>();
+        private final RoaringBitmap active = new RoaringBitmap();
+        private final RoaringBitmap all = new RoaringBitmap();
+        private final Map<Long, AdoptionPostIndexEntry> entries = new HashMap<>();
+
+        // indexed posts, oldest first: by publication date (posts without one first), then by ID
+        private final Comparator<Integer> oldestFirst = Comparator
+                .<Integer, LocalDateTime>comparing(id -> entries.get((long) id).publicationDate(),
+                        Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Comparator.naturalOrder());
+        private final TreeSet<Integer> byDate = new TreeSet<>(oldestFirst);
+
+        // full-text index: posts containing each term, and term frequencies of each post
+        private final Map<String, RoaringBitmap> postings = new HashMap<>();
+        private final Map<Integer, TextDoc> texts = new HashMap<>();
+        private long totalTextLength = 0;
+
+        // spatial grid: posts in each cell, and coordinates of each geocoded post
+        private final Map<Long, RoaringBitmap> cells = new HashMap<>();
+        private final Map<Integer, GeoPoint> points = new HashMap<>();
+
+        /**
+         * Terms of a post, with name terms counted NAME_WEIGHT times.
+         *
+         * @param frequencies weighted frequency of each term
+         * @param length      weighted number of terms
+         */
+        private record TextDoc(Map<String, Integer> frequencies, int length) {}
+
+        void put(AdoptionPostIndexEntry entry) {
+            int id = Math.toIntExact(entry.id());
+            remove(entry.id());
+            entries.put(entry.id(), entry.withoutText());
+            byDate.add(id); // after the entry, which gives the date
+            putText(id, entry.name(), entry.description());
+            all.add(id);
+            for (String facet : FACETS) {
+                String value = valueOf(entry, facet);
+                if (value != null) {
+                    facets.computeIfAbsent(facet, f -> new HashMap<>())
+                            .computeIfAbsent(value, v -> new RoaringBitmap())
+                            .add(id);
+                }
+            }
+            if (entry.age() != null) {
+                ages.computeIfAbsent(entry.age(), a -> new RoaringBitmap()).add(id);
+            }
+            if (Boolean.TRUE.equals(entry.active())) {
+                active.add(id);
+            }
+            if (entry.latitude() != null && entry.longitude() != null) {
+                GeoPoint point = new GeoPoint(entry.latitude(), entry.longitude());
+                points.put(id, point);
+                cells.computeIfAbsent(cellOf(point), c -> new RoaringBitmap()).add(id);
+            }
+        }
+
+        void remove(Long postId) {
+            AdoptionPostIndexEntry old = entries.get(postId);
+            if (old == null) {
+                return;
+            }
+            int id = Math.toIntExact(postId);
+            byDate.remove(id); // before the entry, which gives the date
+            entries.remove(postId);
+            all.remove(id);
+            for (String facet : FACETS) {
+                String value = valueOf(old, facet);
+                if (value != null) {
+                    removeFrom(facets.get(facet), value, id);
+                }
+            }
+            if (old.age() != null) {
+                removeFrom(ages, old.age(), id);
+            }
+            active.remove(id);
+            removeText(id);
+            GeoPoint point = points.remove(id);
+            if (point != null) {
+                removeFrom(cells, cellOf(point), id);
+            }
+        }
+
+        private void putText(int id, String name, String description) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            ItalianAnalyzer.analyze(name).forEach(term -> frequencies.merge(term, NAME_WEIGHT, Integer::sum));
+            ItalianAnalyzer.analyze(description).forEach(term -> frequencies.merge(term, 1, Integer::sum));
+            if (frequencies.isEmpty()) {
+                return;
+            }
+            int length = frequencies.values().stream().mapToInt(Integer::intValue).sum();
+            texts.put(id, new TextDoc(frequencies, length));
+            totalTextLength += length;
+            frequencies.keySet().forEach(term -> postings.computeIfAbsent(term, t -> new RoaringBitmap()).add(id));
+        }
+
+        private void removeText(int id) {
+            TextDoc old = texts.remove(id);
+            if (old == null) {
+                return;
+            }
+            totalTextLength -= old.length();
+            old.frequencies().keySet().forEach(term -> removeFrom(postings, term, id));
+        }
+
+        /**
+         * Orders the matching posts newest first and returns the requested page.
+         * When the matches are a large part of the posts, the posts are walked in date order skipping
+         * the others; otherwise the matches are scanned, keeping only the newest offset + size.
+         */
+        List<Long> newest(RoaringBitmap matches, long offset, int size) {
+            long cardinality = matches.getLongCardinality();
+            if (offset >= cardinality) {
+                return List.of();
+            }
+            long limit = Math.min(offset + size, cardinality);
+            List<Long> page = new ArrayList<>();
+            // posts expected to be walked to find limit matches, against the matches to scan
+            if ((double) limit * all.getLongCardinality() / cardinality <= cardinality) {
+                long skipped = 0;
+                for (Integer id : byDate.descendingSet()) {
+                    if (matches.contains(id)) {
+                        if (skipped < offset) {
+                            skipped++;
+                        } else {
+                            page.add((long) id);
+                            if (page.size() == limit - offset) {
+                                break;
+                            }
+                        }
+                    }
+                }
+                return page;
+            }
+            PriorityQueue<Integer> newest = new PriorityQueue<>(oldestFirst); // oldest on top
+            matches.forEach((int id) -> {
+                newest.add(id);
+                if (newest.size() > limit) {
+                    newest.poll();
+                }
+            });
+            while (!newest.isEmpty()) {
+                page.add((long) newest.poll());
+            }
+            Collections.reverse(page);
+            return page.subList((int) offset, page.size());
+        }
+
+        /**
+         * Orders the matching posts by BM25 score of the query terms (ties broken by newest post)
+         * and returns the requested page. Only the best offset + size posts are kept while scoring.
+         */
+        List<Long> rank(RoaringBitmap matches, Set<String> terms, long offset, int size) {
+            int documents = texts.size();
+            double averageLength = documents == 0 ? 1 : (double) totalTextLength / documents;
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                RoaringBitmap posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                int frequency = posting.getCardinality();
+                double idf = Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+                RoaringBitmap.and(posting, matches).forEach((int id) -> {
+                    TextDoc doc = texts.get(id);
+                    int tf = doc.frequencies().get(term);
+                    double norm = K1 * (1 - B + B * doc.length() / averageLength);
+                    scores.merge(id, idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+                });
+            }
+
+            Comparator<Map.Entry<Integer, Double>> byRelevance = Map.Entry.<Integer, Double>comparingByValue()
+                    .thenComparing(Map.Entry.comparingByKey(oldestFirst));
+            long limit = offset + size;
+            PriorityQueue<Map.Entry<Integer, Double>> best = new PriorityQueue<>(byRelevance); // worst on top
+            for (Map.Entry<Integer, Double> scored : scores.entrySet()) {
+                best.add(scored);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            List<Long> ranked = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                ranked.add((long) best.poll().getKey());
+            }
+            Collections.reverse(ranked);
+            return offset >= ranked.size() ? List.of() : ranked.subList((int) offset, ranked.size());
+        }
+
+        // Same semantics as AdoptionPostSpecification.withFilters and matchingText,
+        // ignoring the filter on excludedFacet (if any)
+        RoaringBitmap match(AdoptionPostSearchDto filter, String excludedFacet) {
+            RoaringBitmap result = all.clone();
+            for (String facet : FACETS) {
+                if (!facet.equals(excludedFacet)) {
+                    matchAny(result, facet, filterValues(filter, facet));
+                }
+            }
+            if (filter.getMinAge() != null || filter.getMaxAge() != null) {
+                int minAge = filter.getMinAge() != null ? filter.getMinAge() : Integer.MIN_VALUE;
+                int maxAge = filter.getMaxAge() != null ? filter.getMaxAge() : Integer.MAX_VALUE;
+                result.and(minAge <= maxAge
+                        ? union(ages.subMap(minAge, true, maxAge, true).values())
+                        : new RoaringBitmap());
+            }
+            if (Boolean.TRUE.equals(filter.getActiveOnly())) {
+                result.and(active);
+            }
+            Set<String> terms = queryTerms(filter);
+            if (!terms.isEmpty()) {
+                // posts containing at least one of the query terms
+                result.and(union(terms.stream()
+                        .map(postings::get)
+                        .filter(Objects::nonNull)
+                        .toList()));
+            }
+            GeoPoint center = centerOf(filter);
+            if (center != null && filter.getRadiusKm() != null) {
+                result = withinRadius(result, center, filter.getRadiusKm());
+            }
+            return result;
+        }
+
+        /**
+         * Keeps the posts within a distance from a point: the grid cells overlapping the bounding box
+         * of the circle give the candidates, whose exact distance is then checked.
+         */
+        private RoaringBitmap withinRadius(RoaringBitmap matches, GeoPoint center, double radiusKm) {
+            double latDelta = radiusKm / GeoPoint.KM_PER_DEGREE;
+            double cosLat = Math.max(Math.cos(Math.toRadians(center.latitude())), 0.01);
+            double lonDelta = radiusKm / (GeoPoint.KM_PER_DEGREE * cosLat);
+            long lastRow = gridIndex(center.latitude() + latDelta);
+            long lastCol = gridIndex(center.longitude() + lonDelta);
+            List<RoaringBitmap> overlapping = new ArrayList<>();
+            for (long row = gridIndex(center.latitude() - latDelta); row <= lastRow; row++) {
+                for (long col = gridIndex(center.longitude() - lonDelta); col <= lastCol; col++) {
+                    RoaringBitmap cell = cells.get(cellKey(row, col));
+                    if (cell != null) {
+                        overlapping.add(cell);
+                    }
+                }
+            }
+            RoaringBitmap candidates = union(overlapping);
+            candidates.and(matches);
+            RoaringBitmap result = new RoaringBitmap();
+            candidates.forEach((int id) -> {
+                if (points.get(id).distanceKm(center) <= radiusKm) {
+                    result.add(id);
+                }
+            });
+            return result;
+        }
+
+        /**
+         * Orders the matching posts by distance from a point (ties broken by newest post)
+         * and returns the requested page. Posts without coordinates come last.
+         */
+        List<Long> nearest(RoaringBitmap matches, GeoPoint center, long offset, int size) {
+            Comparator<Map.Entry<Integer, Double>> byDistance = Map.Entry.<Integer, Double>comparingByValue()
+                    .reversed()
+                    .thenComparing(Map.Entry.comparingByKey(oldestFirst));
+            long limit = offset + size;
+            PriorityQueue<Map.Entry<Integer, Double>> best = new PriorityQueue<>(byDistance); // farthest on top
+            matches.forEach((int id) -> {
+                GeoPoint point = points.get(id);
+                best.add(Map.entry(id, point != null ? point.distanceKm(center) : Double.MAX_VALUE));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            });
+            List<Long> nearest = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                nearest.add((long) best.poll().getKey());
+            }
+            Collections.reverse(nearest);
+            return offset >= nearest.size() ? List.of() : nearest.subList((int) offset, nearest.size());
+        }
+
+        private static long cellOf(GeoPoint point) {
+            return cellKey(gridIndex(point.latitude()), gridIndex(point.longitude()));
+        }
+
+        private static long gridIndex(double degrees) {
+            return (long) Math.floor(degrees / GRID_CELL_DEGREES);
+        }
+
+        private static long cellKey(long row, long col) {
+            return (row << 32) | (col & 0xFFFFFFFFL);
+        }
+
+        Map<String, Long> countValues(String facet, RoaringBitmap matches) {
+            Map<String, Long> counts = new HashMap<>();
+            facets.getOrDefault(facet, Map.of()).forEach((value, bitmap) -> {
+                long count = RoaringBitmap.andCardinality(bitmap, matches);
+                if (count > 0) {
+                    counts.put(value, count);
+                }
+            });
+            return counts;
+        }
+
+        // Keeps in result only the posts having one of the values (no-op if no value is given)
+        private void matchAny(RoaringBitmap result, String facet, List<String> values) {
+            if (values == null || values.isEmpty()) {
+                return;
+            }
+            Map<String, RoaringBitmap> bitmaps = facets.getOrDefault(facet, Map.of());
+            result.and(union(values.stream()
+                    .map(bitmaps::get)
+                    .filter(Objects::nonNull)
+                    .toList()));
+        }
+
+        private static RoaringBitmap union(Collection<RoaringBitmap> bitmaps) {
+            return bitmaps.isEmpty() ? new RoaringBitmap() : FastAggregation.or(bitmaps.iterator());
+        }
+
+        private static <K> void removeFrom(Map<K, RoaringBitmap> bitmaps, K value, int id) {
+            RoaringBitmap bitmap = bitmaps != null ? bitmaps.get(value) : null;
+            if (bitmap != null) {
+                bitmap.remove(id);
+                if (bitmap.isEmpty()) {
+                    bitmaps.remove(value);
+                }
+            }
+        }
+
+        private static List<String> filterValues(AdoptionPostSearchDto filter, String facet) {
+            return switch (facet) {
+                case SPECIES -> filter.getSpecies();
+                case BREED -> filter.getBreed();
+                case GENDER -> filter.getGender() != null && !filter.getGender().isBlank()
+                        ? List.of(filter.getGender())
+                        : null;
+                case COLOR -> filter.getColor();
+                case LOCATION -> filter.getLocation();
+                default -> throw new IllegalArgumentException("Unknown facet " + facet);
+            };
+        }
+
+        private static String valueOf(AdoptionPostIndexEntry entry, String facet) {
+            return switch (facet) {
+                case SPECIES -> entry.species();
+                case BREED -> entry.breed();
+                case GENDER -> entry.gender();
+                case COLOR -> entry.color();
+                case LOCATION -> entry.location();
+                default -> throw new IllegalArgumentException("Unknown facet " + facet);
+            };
+        }
+    }
+}
@@ -1,22 +1,58 @@
 package org.example.adoptionpostservice.service;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
 import org.example.adoptionpostservice.model.AdoptionPost;
+import org.example.adoptionpostservice.model.PostChange;
 import org.example.adoptionpostservice.repository.AdoptionPostRepository;
 import org.example.adoptionpostservice.repository.AdoptionPostSpecification;
+import org.example.adoptionpostservice.repository.PostChangeRepository;
+import org.example.adoptionpostservice.dto.AdoptionPostChangeDto;
+import org.example.adoptionpostservice.dto.AdoptionPostChangesDto;
 import org.example.adoptionpostservice.dto.AdoptionPostDetailDto;
+import org.example.adoptionpostservice.dto.AdoptionPostFacetsDto;
+import org.example.adoptionpostservice.dto.AdoptionPostIndexEntry;
+import org.example.adoptionpostservice.dto.AdoptionPostLookupDto;
+import org.example.adoptionpostservice.dto.AdoptionPostSliceDto;
+import org.example.adoptionpostservice.dto.GeoPoint;
+import org.example.adoptionpostservice.dto.SearchCursor;
 import org.example.shareddtos.dto.AdoptionPostSearchDto;
 import org.example.shareddtos.dto.AdoptionPostSummaryDto;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.AccessDeniedException;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service for managing adoption posts.
@@ -24,56 +60,335 @@ import java.util.NoSuchElementException;
 @Service
 public class AdoptionPostService {
 
+    /** Sort property ordering search results by distance from the search center */
+    public static final String DISTANCE_SORT = "distance";
+
+    // default order of the search results
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "publicationDate", "id");
+
+    // rows read from the database cursor at a time during an export
+    private static final int EXPORT_FETCH_SIZE = 500;
+
     private final AdoptionPostRepository repository;
 
     private final RabbitMQService rabbitMQService;
 
+    private final ImageProcessingService imageProcessingService;
+
+    private final ApproximateCountCache countCache;
+
+    private final AdoptionPostIndex searchIndex;
+
+    private final SimilarPostIndex similarIndex;
+
+    private final GazetteerService gazetteerService;
+
+    private final AdoptionPostCache cache;
+
+    private final PostChangeService postChangeService;
+
+    private final PostChangeRepository changeRepository;
+
+    private final PostViewCounter viewCounter;
+
+    private final ObjectWriter exportWriter;
+
+    private final TransactionTemplate exportTransaction;
+
     /**
      * Constructor
      *
      * @param repository the adoption post repository
+     * @param imageProcessingService the service generating thumbnails and placeholders of post images
+     * @param countCache cache of approximate search result counts
+     * @param searchIndex in-memory index serving the searches
+     * @param similarIndex in-memory index of the most similar posts of each post
+     * @param gazetteerService offline geocoder of post locations
+     * @param cache cache of post details and search pages
+     * @param postChangeService propagates post changes to the index and the caches of every replica
+     * @param changeRepository the change feed repository
+     * @param viewCounter counts the views of the posts
+     * @param objectMapper used to write exports
+     * @param transactionManager used to stream exports inside a read-only transaction
      */
-    public AdoptionPostService(AdoptionPostRepository repository, RabbitMQService rabbitMQService) {
+    public AdoptionPostService(AdoptionPostRepository repository, RabbitMQService rabbitMQService,
+                               ImageProcessingService imageProcessingService, ApproximateCountCache countCache,
+                               AdoptionPostIndex searchIndex, SimilarPostIndex similarIndex,
+                               GazetteerService gazetteerService,
+                               AdoptionPostCache cache, PostChangeService postChangeService,
+                               PostChangeRepository changeRepository, PostViewCounter viewCounter,
+                               ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
         this.repository = repository;
         this.rabbitMQService = rabbitMQService;
+        this.imageProcessingService = imageProcessingService;
+        this.countCache = countCache;
+        this.searchIndex = searchIndex;
+        this.similarIndex = similarIndex;
+        this.gazetteerService = gazetteerService;
+        this.cache = cache;
+        this.postChangeService = postChangeService;
+        this.changeRepository = changeRepository;
+        this.viewCounter = viewCounter;
+        // omitted fields (e.g. the image columns) are left out instead of written as null
+        this.exportWriter = objectMapper.copy()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.exportTransaction = new TransactionTemplate(transactionManager);
+        this.exportTransaction.setReadOnly(true);
     }
 
     /**
-     * Retrieves a post by its ID.
+     * Retrieves a post by its ID, from the cache when possible.
+     * If only some fields are requested and the post is not cached, only their columns are read
+     * (and the partial post is not cached).
+     * Each call counts as a view of the post.
      *
-     * @param id post ID
+     * @param id     post ID
+     * @param fields detail properties to read (see {@link FieldSelection}), or null for all of them
      * @return detailed AdoptionPost DTO
      * @throws NoSuchElementException if post not found
      */
-    public AdoptionPostDetailDto getPostById(Long id) {
-        AdoptionPost post = repository.findById(id)
-                .orElseThrow(() -> new NoSuchElementException("Not found" + id));
-        return toDetailDto(post);
+    @Transactional(readOnly = true)
+    public AdoptionPostDetailDto getPostById(Long id, Set<String> fields) {
+        AdoptionPostDetailDto post;
+        if (fields != null) {
+            AdoptionPostDetailDto cached = cache.getCachedDetails(List.of(id)).get(id);
+            post = cached != null
+                    ? cached
+                    : repository.findDetailById(id, fields).orElseThrow(() -> new NoSuchElementException("Not found" + id));
+        } else {
+            post = cache.getDetail(id, () -> toDetailDto(repository.findById(id)
+                    .orElseThrow(() -> new NoSuchElementException("Not found" + id))));
+        }
+        viewCounter.recordView(id);
+        if (fields == null || fields.contains("views")) {
+            // cached posts are shared, the views are set on a copy
+            post = post.toBuilder().views(viewCounter.getViews(List.of(id)).get(id)).build();
+        }
+        return post;
+    }
+
+    /**
+     * Retrieves the summaries of many posts, taking them from the details cache when present
+     * and loading all the others with a single query.
+     *
+     * @param ids post IDs
+     * @return one result per ID, in the same order, marked as not found if the post does not exist
+     */
+    @Transactional(readOnly = true)
+    public List<AdoptionPostLookupDto> getSummariesByIds(List<Long> ids) {
+        Map<Long, AdoptionPostSummaryDto> posts = new HashMap<>();
+        cache.getCachedDetails(ids).forEach((id, detail) -> posts.put(id, toSummaryDto(detail)));
+        List<Long> missing = ids.stream()
+                .filter(id -> !posts.containsKey(id))
+                .distinct()
+                .toList();
+        repository.findSummariesByIds(missing).forEach(post -> posts.put(post.getId(), post));
+        return ids.stream()
+                .map(id -> new AdoptionPostLookupDto(id, posts.containsKey(id), posts.get(id)))
+                .toList();
+    }
+
+    /**
+     * Retrieves the active posts most similar to a post (same species, then close breed, age, color and location),
+     * most similar first. The neighbors come from the in-memory {@link SimilarPostIndex}, and their summaries
+     * from the details cache or a single query; while the index is not available no post is returned.
+     *
+     * @param postId post ID
+     * @param limit  maximum number of posts to return
+     * @return the summaries of the similar posts
+     * @throws NoSuchElementException if post not found
+     */
+    @Transactional(readOnly = true)
+    public List<AdoptionPostSummaryDto> getSimilarPosts(Long postId, int limit) {
+        Optional<List<Long>> ids = similarIndex.similar(postId, limit);
+        if (ids.isEmpty()) {
+            // not indexed yet, or the index is being built
+            if (!repository.existsById(postId)) {
+                throw new NoSuchElementException("Not found" + postId);
+            }
+            return List.of();
+        }
+        return getSummariesByIds(ids.get()).stream()
+                .filter(AdoptionPostLookupDto::isFound) // deleted after the index was read
+                .map(AdoptionPostLookupDto::getPost)
+                .toList();
     }
 
     /**
      * Retrieves filtered adoption posts with pagination.
+     * Unsorted searches, and searches sorted by "distance" from the search center, are answered by the
+     * in-memory index (by relevance if a free-text query is given, newest posts first otherwise),
+     * which leaves to the database only the loading of the page;
+     * other sorted searches, or searches made while the index is unavailable, are run on the database
+     * (where the distance order is not available).
+     * The first pages of each search are cached until a post matching the search changes.
      *
      * @param filterDto filtering criteria
      * @param pageable  pagination information
+     * @param fields    summary properties to read (see {@link FieldSelection}), or null for all of them
      * @return paginated list of filtered AdoptionPost summaries
+     * @throws IllegalArgumentException if the search is centered on an unknown place
      */
-    public Page<AdoptionPostSummaryDto> getFilteredPosts(@Valid AdoptionPostSearchDto filterDto, Pageable pageable) {
-        // Build a dynamic Specification based on provided filters
-        Specification<AdoptionPost> spec = AdoptionPostSpecification.withFilters(
-                filterDto.getSpecies(),
-                filterDto.getBreed(),
-                filterDto.getGender(),
-                filterDto.getMinAge(),
-                filterDto.getMaxAge(),
-                filterDto.getColor(),
-                filterDto.getLocation(),
-                filterDto.getActiveOnly()
+    @Transactional(readOnly = true)
+    public Page<AdoptionPostSummaryDto> getFilteredPosts(@Valid AdoptionPostSearchDto filterDto, Pageable pageable,
+                                                         Set<String> fields) {
+        resolveCenter(filterDto);
+        String key = filterKey(filterDto) + "|" + (fields != null ? String.join(",", fields) : "*");
+        return cache.getSearchPage(key, filterDto, pageable, () -> search(filterDto, pageable, fields));
+    }
+
+    /**
+     * Runs a search on the index or, if not possible, on the database.
+     *
+     * @param filterDto filtering criteria, with the search center resolved
+     * @param pageable  pagination information
+     * @param fields    summary properties to read, or null for all of them
+     * @return paginated list of filtered AdoptionPost summaries
+     */
+    private Page<AdoptionPostSummaryDto> search(AdoptionPostSearchDto filterDto, Pageable pageable,
+                                                Set<String> fields) {
+        boolean byDistance = pageable.getSort().getOrderFor(DISTANCE_SORT) != null;
+        if (pageable.getSort().isUnsorted() || byDistance) {
+            long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+            int size = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+            Optional<AdoptionPostIndex.IndexPage> page = searchIndex.page(filterDto, offset, size, byDistance);
+            if (page.isPresent()) {
+                return toPage(page.get(), pageable, fields);
+            }
+        }
+        if (pageable.getSort().isUnsorted() || byDistance) {
+            // same default order as the index (distances are only computed by the index)
+            pageable = pageable.isPaged()
+                    ? PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), NEWEST_FIRST)
+                    : Pageable.unpaged(NEWEST_FIRST);
+        }
+        // Execute the query with filters and pagination, reading only the summary columns
+        return repository.findSummaries(toSpecification(filterDto), pageable, fields);
+    }
+
+    /**
+     * Retrieves filtered adoption posts with keyset pagination, newest first.
+     * Each slice starts right after the cursor of the previous one, so its cost does not grow with depth.
+     *
+     * @param filterDto filtering criteria
+     * @param cursor    encoded cursor returned with the previous slice, or null for the first slice
+     * @param size      maximum number of posts in the slice
+     * @param withTotal whether to include an approximate total of matching posts
+     * @return a slice of filtered AdoptionPost summaries
+     * @throws IllegalArgumentException if the cursor is malformed or the search is centered on an unknown place
+     */
+    public AdoptionPostSliceDto getFilteredPostsByCursor(AdoptionPostSearchDto filterDto, String cursor,
+                                                         int size, boolean withTotal) {
+        resolveCenter(filterDto);
+        Specification<AdoptionPost> spec = toSpecification(filterDto);
+        SearchCursor after = cursor != null && !cursor.isBlank() ? SearchCursor.decode(cursor) : null;
+
+        // one extra post is read to know whether another slice follows
+        List<AdoptionPostSummaryDto> posts = repository.findSummariesAfter(spec, after, size + 1);
+        boolean hasNext = posts.size() > size;
+        List<AdoptionPostSummaryDto> content = hasNext ? posts.subList(0, size) : posts;
+
+        String nextCursor = null;
+        if (hasNext) {
+            AdoptionPostSummaryDto last = content.get(content.size() - 1);
+            nextCursor = new SearchCursor(last.getPublicationDate(), last.getId()).encode();
+        }
+        Long approximateTotal = withTotal
+                ? countCache.get(filterKey(filterDto), () -> repository.countMatching(spec))
+                : null;
+        return new AdoptionPostSliceDto(content, hasNext, nextCursor, approximateTotal);
+    }
+
+    /**
+     * Counts, for every search facet, the posts matching each of its values.
+     * Each facet is counted ignoring its own filter, so the alternatives to the selected values are counted too.
+     * The counts are computed on the search index; if it is not available,
+     * one grouped query per facet is run on the database.
+     *
+     * @param filterDto filtering criteria
+     * @return the facet counts
+     * @throws IllegalArgumentException if the search is centered on an unknown place
+     */
+    public AdoptionPostFacetsDto getFacetCounts(AdoptionPostSearchDto filterDto) {
+        resolveCenter(filterDto);
+        return searchIndex.facetCounts(filterDto).orElseGet(() -> {
+            Map<String, Map<String, Long>> counts = new LinkedHashMap<>();
+            for (String facet : AdoptionPostIndex.FACETS) {
+                counts.put(facet, repository.countByValue(toSpecification(withoutFacet(filterDto, facet)), facet));
+            }
+            return new AdoptionPostFacetsDto(repository.countMatching(toSpecification(filterDto)), counts);
+        });
+    }
+
+    /**
+     * Reads the change feed after a cursor: the posts created, updated, adopted or deleted since then.
+     * Each post appears at most once, with its current state or as a tombstone if deleted.
+     *
+     * @param since sequence number of the last change already read (0 for all the posts)
+     * @param limit maximum number of changes read
+     * @return the changes and the cursor to read the following ones
+     */
+    @Transactional(readOnly = true)
+    public AdoptionPostChangesDto getChanges(long since, int limit) {
+        // one extra change is read to know whether more follow
+        List<PostChange> changes = changeRepository.findAfter(since, PageRequest.of(0, limit + 1));
+        boolean hasMore = changes.size() > limit;
+        if (hasMore) {
+            changes = changes.subList(0, limit);
+        }
+
+        // only the last change of each post matters, in the position of that change
+        Map<Long, PostChange> lastChanges = new LinkedHashMap<>();
+        for (PostChange change : changes) {
+            lastChanges.remove(change.getPostId());
+            lastChanges.put(change.getPostId(), change);
+        }
+        Map<Long, AdoptionPostSummaryDto> posts = repository.findSummariesByIds(lastChanges.values().stream()
+                        .filter(change -> !change.getDeleted())
+                        .map(PostChange::getPostId)
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(AdoptionPostSummaryDto::getId, Function.identity()));
+
+        List<AdoptionPostChangeDto> content = lastChanges.values().stream()
+                .map(change -> {
+                    // a post missing here has been deleted after this change, its tombstone follows
+                    AdoptionPostSummaryDto post = posts.get(change.getPostId());
+                    return new AdoptionPostChangeDto(change.getSeq(), change.getPostId(), post == null, post);
+                })
+                .toList();
+        long nextCursor = changes.isEmpty() ? since : changes.get(changes.size() - 1).getSeq();
+        return new AdoptionPostChangesDto(content, nextCursor, hasMore);
+    }
 
-        );
-        // Execute the query with filters and pagination, then map results to summary DTOs
-        return repository.findAll(spec, pageable)
-                .map(this::toSummaryDto);
+    /**
+     * Exports all the posts matching the filters as NDJSON (one AdoptionPostDetailDto per line), ordered by ID.
+     * Posts are read through a database cursor and written straight to the response,
+     * so memory use does not depend on the number of exported posts.
+     *
+     * @param filterDto  filtering criteria
+     * @param withImages whether to include the image key and placeholder of each post
+     * @return the body writing the export
+     * @throws IllegalArgumentException if the search is centered on an unknown place
+     */
+    public StreamingResponseBody exportPosts(AdoptionPostSearchDto filterDto, boolean withImages) {
+        resolveCenter(filterDto);
+        Specification<AdoptionPost> spec = toSpecification(filterDto);
+        return out -> exportTransaction.executeWithoutResult(status -> {
+            try (Stream<AdoptionPostDetailDto> posts = repository.streamDetails(spec, withImages, EXPORT_FETCH_SIZE);
+                 JsonGenerator generator = exportWriter.createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                for (AdoptionPostDetailDto post : (Iterable<AdoptionPostDetailDto>) posts::iterator) {
+                    exportWriter.writeValue(generator, post);
+                    generator.writeRaw('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
     /**
@@ -83,6 +398,7 @@ public class AdoptionPostService {
      * @param userId Requesting user ID (=owner)
      * @return saved AdoptionPost DTO
      */
+    @Transactional
     public AdoptionPostDetailDto createPost(AdoptionPostDetailDto dto, Long userId) {
         AdoptionPost post = AdoptionPost.builder()
                 .name(dto.getName())
@@ -97,10 +413,13 @@ public class AdoptionPostService {
                 .active(true)
                 .adopterId(null)
                 .publicationDate(LocalDateTime.now())
-                .imageBase64(dto.getImageBase64())
+                .imageKey(dto.getImageKey())
+                .imagePlaceholder(dto.getImagePlaceholder()) // created with the thumbnails on upload
                 .build();
+        geocode(post);
         AdoptionPost saved = repository.save(post); //saving in db
-        rabbitMQService.sendNewPostEvent(toSummaryDto(post)); //sending message with rabbitMQ
+        postChangeService.postChanged(saved.getId(), null, AdoptionPostIndexEntry.of(saved));
+        rabbitMQService.sendNewPostEvent(toSummaryDto(saved)); //sending message with rabbitMQ, through the outbox
         return toDetailDto(saved);
     }
 
@@ -118,7 +437,9 @@ public class AdoptionPostService {
         if (!post.getOwnerId().equals(userId)) {
             throw new AccessDeniedException("You are not the owner of this post");
         }
+        AdoptionPostIndexEntry before = AdoptionPostIndexEntry.of(post);
         repository.delete(post);
+        postChangeService.postChanged(postId, before, null);
     }
 
     /**
@@ -129,13 +450,19 @@ public class AdoptionPostService {
      * @param userId Requesting user ID
      * @return updated AdoptionPost DTO
      * @throws AccessDeniedException if user is not the owner
+     * @throws ObjectOptimisticLockingFailureException if the post has been changed since the given version was read
      */
+    @Transactional
     public AdoptionPostDetailDto updatePost(AdoptionPostDetailDto dto, Long postId, Long userId) throws AccessDeniedException {
         AdoptionPost post = repository.findById(postId)
                 .orElseThrow(() -> new EntityNotFoundException("Post not found with id " + postId));
         if (!post.getOwnerId().equals(userId)) {
             throw new AccessDeniedException("You are not the owner of this post");
         }
+        if (dto.getVersion() != null && !dto.getVersion().equals(post.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(AdoptionPost.class, postId);
+        }
+        AdoptionPostIndexEntry before = AdoptionPostIndexEntry.of(post);
         if (dto.getName() != null) post.setName(dto.getName());
         if (dto.getDescription() != null) post.setDescription(dto.getDescription());
         if (dto.getSpecies() != null) post.setSpecies(dto.getSpecies());
@@ -143,10 +470,17 @@ public class AdoptionPostService {
         if (dto.getGender() != null) post.setGender(dto.getGender());
         if (dto.getAge() != null) post.setAge(dto.getAge());
         if (dto.getColor() != null) post.setColor(dto.getColor());
-        if (dto.getLocation() != null) post.setLocation(dto.getLocation());
-        if (dto.getImageBase64() != null) post.setImageBase64(dto.getImageBase64());
+        if (dto.getLocation() != null && !dto.getLocation().equals(post.getLocation())) {
+            post.setLocation(dto.getLocation());
+            geocode(post);
+        }
+        if (dto.getImageKey() != null && !dto.getImageKey().equals(post.getImageKey())) {
+            post.setImageKey(dto.getImageKey());
+            post.setImagePlaceholder(imagePlaceholderOf(dto));
+        }
 
-        AdoptionPost updated = repository.save(post);
+        AdoptionPost updated = repository.saveAndFlush(post); // flushed to check and increment the version
+        postChangeService.postChanged(postId, before, AdoptionPostIndexEntry.of(updated));
         return toDetailDto(updated);
     }
 
@@ -156,11 +490,18 @@ public class AdoptionPostService {
      *
      * @param ownerId owner ID
      * @param pageable pagination information
-     * @return a page of AdoptionPostSummaryDto
+     * @param fields summary properties to read (see {@link FieldSelection}), or null for all of them
+     * @return a page of AdoptionPostSummaryDto, with the views of each post
      */
-    public Page<AdoptionPostSummaryDto> getPostsByOwnerId(Long ownerId, Pageable pageable) {
-        return repository.findByOwnerId(ownerId, pageable)
-                .map(this::toSummaryDto);
+    @Transactional(readOnly = true)
+    public Page<AdoptionPostSummaryDto> getPostsByOwnerId(Long ownerId, Pageable pageable, Set<String> fields) {
+        Page<AdoptionPostSummaryDto> posts = repository.findSummaries(AdoptionPostSpecification.ownedBy(ownerId),
+                pageable, fields);
+        if (fields == null || fields.contains("views")) {
+            Map<Long, Long> views = viewCounter.getViews(posts.map(AdoptionPostSummaryDto::getId).getContent());
+            posts.forEach(post -> post.setViews(views.get(post.getId())));
+        }
+        return posts;
     }
 
     /**
@@ -169,13 +510,153 @@ public class AdoptionPostService {
      *
      * @param adopterId adopter ID
      * @param pageable pagination information
+     * @param fields summary properties to read (see {@link FieldSelection}), or null for all of them
      * @return a page of AdoptionPostSummaryDto
      */
-    public Page<AdoptionPostSummaryDto> getPostsByAdopterId(Long adopterId, Pageable pageable)  {
-        return repository.findByAdopterId(adopterId, pageable)
-                .map(this::toSummaryDto);
+    @Transactional(readOnly = true)
+    public Page<AdoptionPostSummaryDto> getPostsByAdopterId(Long adopterId, Pageable pageable, Set<String> fields)  {
+        return repository.findSummaries(AdoptionPostSpecification.adoptedBy(adopterId), pageable, fields);
+    }
+
+    /**
+     * Returns the placeholder of the new image of a post.
+     * The controller creates it with the thumbnails when the image is uploaded, before the transaction;
+     * an image already in the store, referenced by its key, is processed here.
+     *
+     * @param dto the post data, with the image key and possibly its placeholder
+     * @return the placeholder data URI, or null if there is no image or it cannot be processed
+     */
+    private String imagePlaceholderOf(AdoptionPostDetailDto dto) {
+        if (dto.getImageKey() == null || dto.getImagePlaceholder() != null) {
+            return dto.getImagePlaceholder();
+        }
+        return imageProcessingService.createVariants(dto.getImageKey());
+    }
+
+    /**
+     * Loads a page of posts whose IDs come from the search index, keeping the index order.
+     *
+     * @param page     the IDs of the page and the total number of matches
+     * @param pageable pagination information
+     * @param fields   summary properties to read, or null for all of them
+     * @return the page of AdoptionPost summaries
+     */
+    private Page<AdoptionPostSummaryDto> toPage(AdoptionPostIndex.IndexPage page, Pageable pageable,
+                                                Set<String> fields) {
+        Map<Long, AdoptionPostSummaryDto> posts = repository.findSummariesByIds(page.ids(), fields).stream()
+                .collect(Collectors.toMap(AdoptionPostSummaryDto::getId, Function.identity()));
+        List<AdoptionPostSummaryDto> content = page.ids().stream()
+                .map(posts::get)
+                .filter(Objects::nonNull) // deleted after the index was read
+                .toList();
+        content.forEach(post -> post.setDistanceKm(page.distancesKm().get(post.getId())));
+        return new PageImpl<>(content, pageable, page.total());
+    }
+
+    /**
+     * Sets the coordinates of the post from its location, using the offline gazetteer.
+     * Locations not in the gazetteer leave the post without coordinates.
+     *
+     * @param post the AdoptionPost entity
+     */
+    private void geocode(AdoptionPost post) {
+        Optional<GeoPoint> point = gazetteerService.locate(post.getLocation());
+        post.setLatitude(point.map(GeoPoint::latitude).orElse(null));
+        post.setLongitude(point.map(GeoPoint::longitude).orElse(null));
+    }
+
+    /**
+     * Replaces the place name the search is centered on ("near") with its coordinates.
+     *
+     * @param filterDto filtering criteria, updated in place
+     * @throws IllegalArgumentException if the place is not in the gazetteer
+     */
+    private void resolveCenter(AdoptionPostSearchDto filterDto) {
+        if (filterDto.getNear() != null && !filterDto.getNear().isBlank()
+                && (filterDto.getLatitude() == null || filterDto.getLongitude() == null)) {
+            GeoPoint center = gazetteerService.locate(filterDto.getNear())
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown place " + filterDto.getNear()));
+            filterDto.setLatitude(center.latitude());
+            filterDto.setLongitude(center.longitude());
+        }
+    }
+
+    /**
+     * Builds a dynamic Specification based on the provided filters.
+     *
+     * @param filterDto filtering criteria
+     * @return the Specification matching the filters
+     */
+    private Specification<AdoptionPost> toSpecification(AdoptionPostSearchDto filterDto) {
+        Specification<AdoptionPost> text = AdoptionPostSpecification.matchingText(
+                new LinkedHashSet<>(ItalianAnalyzer.analyze(filterDto.getQuery())));
+        Specification<AdoptionPost> radius = filterDto.getLatitude() != null && filterDto.getLongitude() != null
+                && filterDto.getRadiusKm() != null
+                ? AdoptionPostSpecification.withinRadius(
+                        filterDto.getLatitude(), filterDto.getLongitude(), filterDto.getRadiusKm())
+                : null;
+        return AdoptionPostSpecification.withFilters(
+                filterDto.getSpecies(),
+                filterDto.getBreed(),
+                filterDto.getGender(),
+                filterDto.getMinAge(),
+                filterDto.getMaxAge(),
+                filterDto.getColor(),
+                filterDto.getLocation(),
+                filterDto.getActiveOnly()
+        ).and(text).and(radius);
     }
 
+    /**
+     * Copies the filters, removing the one on the given facet.
+     *
+     * @param filterDto filtering criteria
+     * @param facet     facet whose filter is removed
+     * @return the copied filtering criteria
+     */
+    private static AdoptionPostSearchDto withoutFacet(AdoptionPostSearchDto filterDto, String facet) {
+        AdoptionPostSearchDto copy = new AdoptionPostSearchDto();
+        copy.setSpecies(AdoptionPostIndex.SPECIES.equals(facet) ? null : filterDto.getSpecies());
+        copy.setBreed(AdoptionPostIndex.BREED.equals(facet) ? null : filterDto.getBreed());
+        copy.setGender(AdoptionPostIndex.GENDER.equals(facet) ? null : filterDto.getGender());
+        copy.setColor(AdoptionPostIndex.COLOR.equals(facet) ? null : filterDto.getColor());
+        copy.setLocation(AdoptionPostIndex.LOCATION.equals(facet) ? null : filterDto.getLocation());
+        copy.setMinAge(filterDto.getMinAge());
+        copy.setMaxAge(filterDto.getMaxAge());
+        copy.setActiveOnly(filterDto.getActiveOnly());
+        copy.setQuery(filterDto.getQuery());
+        copy.setNear(filterDto.getNear());
+        copy.setLatitude(filterDto.getLatitude());
+        copy.setLongitude(filterDto.getLongitude());
+        copy.setRadiusKm(filterDto.getRadiusKm());
+        return copy;
+    }
+
+    /**
+     * Builds a key identifying a combination of filters, independent of the order of list values.
+     *
+     * @param filterDto filtering criteria
+     * @return the filter key
+     */
+    private static String filterKey(AdoptionPostSearchDto filterDto) {
+        return String.join("|",
+                sortedKey(filterDto.getSpecies()),
+                sortedKey(filterDto.getBreed()),
+                String.valueOf(filterDto.getGender()),
+                String.valueOf(filterDto.getMinAge()),
+                String.valueOf(filterDto.getMaxAge()),
+                sortedKey(filterDto.getColor()),
+                sortedKey(filterDto.getLocation()),
+                String.valueOf(filterDto.getActiveOnly()),
+                String.join(" ", new TreeSet<>(ItalianAnalyzer.analyze(filterDto.getQuery()))),
+                String.valueOf(filterDto.getLatitude()),
+                String.valueOf(filterDto.getLongitude()),
+                String.valueOf(filterDto.getRadiusKm()));
+    }
+
+    private static String sortedKey(List<String> values) {
+        return values == null ? "" : String.join(",", new TreeSet<>(values));
+    }
 
 
 //--------------------------------------------------------------TODO: da implementare con un mapper automatico
@@ -200,7 +681,9 @@ public class AdoptionPostService {
         dto.setOwnerId(post.getOwnerId());
         dto.setActive(post.getActive());
         dto.setAdopterId(post.getAdopterId());
-        dto.setImageBase64(post.getImageBase64());
+        dto.setImageKey(post.getImageKey());
+        dto.setImagePlaceholder(post.getImagePlaceholder());
+        dto.setVersion(post.getVersion());
 
         return dto;
     }
@@ -211,10 +694,11 @@ public class AdoptionPostService {
      * @param post the AdoptionPost entity
      * @return AdoptionPost summary DTO
      */
-    private AdoptionPostSummaryDto toSummaryDto(AdoptionPost post) {
+    static AdoptionPostSummaryDto toSummaryDto(AdoptionPost post) {
         AdoptionPostSummaryDto dto = new AdoptionPostSummaryDto();
         dto.setId(post.getId());
         dto.setName(post.getName());
+        dto.setPublicationDate(post.getPublicationDate());
         dto.setSpecies(post.getSpecies());
         dto.setBreed(post.getBreed());
         dto.setGender(post.getGender());
@@ -222,7 +706,31 @@ public class AdoptionPostService {
         dto.setColor(post.getColor());
         dto.setLocation(post.getLocation());
         dto.setActive(post.getActive());
-        dto.setImageBase64(post.getImageBase64());
+        dto.setImageKey(post.getImageKey());
+        dto.setImagePlaceholder(post.getImagePlaceholder());
+        return dto;
+    }
+
+    /**
+     * Converts a post detail DTO to summary DTO.
+     *
+     * @param detail AdoptionPost detailed DTO
+     * @return AdoptionPost summary DTO
+     */
+    private static AdoptionPostSummaryDto toSummaryDto(AdoptionPostDetailDto detail) {
+        AdoptionPostSummaryDto dto = new AdoptionPostSummaryDto();
+        dto.setId(detail.getId());
+        dto.setName(detail.getName());
+        dto.setPublicationDate(detail.getPublicationDate());
+        dto.setSpecies(detail.getSpecies());
+        dto.setBreed(detail.getBreed());
+        dto.setGender(detail.getGender());
+        dto.setAge(detail.getAge());
+        dto.setColor(detail.getColor());
+        dto.setLocation(detail.getLocation());
+        dto.setActive(detail.getActive());
+        dto.setImageKey(detail.getImageKey());
+        dto.setImagePlaceholder(detail.getImagePlaceholder());
         return dto;
     }
 }
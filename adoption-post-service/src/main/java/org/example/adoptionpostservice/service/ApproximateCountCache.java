@@ -0,0 +1,44 @@
+package org.example.adoptionpostservice.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Small in-memory cache of search result counts, keyed by the search filters.
+ * Counts are kept for a short time, so the totals shown to clients are approximate
+ * but repeated keyset searches do not run a count query for every slice.
+ */
+@Component
+public class ApproximateCountCache {
+
+    private static final long TTL_MILLIS = 60_000;
+
+    private static final int MAX_ENTRIES = 1_000;
+
+    private record Entry(long count, long expiresAt) {}
+
+    private final Map<String, Entry> counts = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the cached count for a key, computing it if missing or expired.
+     *
+     * @param key     identifies the search filters
+     * @param counter computes the exact count
+     * @return the (possibly stale) count
+     */
+    public long get(String key, LongSupplier counter) {
+        long now = System.currentTimeMillis();
+        Entry entry = counts.get(key);
+        if (entry == null || entry.expiresAt() < now) {
+            if (counts.size() >= MAX_ENTRIES) {
+                counts.clear(); // keeps memory bounded without tracking usage
+            }
+            entry = new Entry(counter.getAsLong(), now + TTL_MILLIS);
+            counts.put(key, entry);
+        }
+        return entry.count();
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.adoptionpostservice.service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Sparse fieldsets: the properties of the post DTOs a client asks for with the "fields" parameter.
+ * Only the selected properties are read from the database and written to the response
+ * (through the Jackson filter named {@link #FILTER_ID}); the ID is always included.
+ */
+public final class FieldSelection {
+
+    /** ID of the Jackson filter applied to the post DTOs */
+    public static final String FILTER_ID = "fields";
+
+    /** Properties of AdoptionPostSummaryDto that can be selected */
+    public static final List<String> SUMMARY_FIELDS = List.of(
+            "id", "name", "publicationDate", "species", "breed", "age", "gender", "color", "location",
+            "distanceKm", "active", "imageKey", "imagePlaceholder", "views");
+
+    /** Properties of AdoptionPostDetailDto that can be selected */
+    public static final List<String> DETAIL_FIELDS = List.of(
+            "id", "name", "description", "publicationDate", "species", "breed", "gender", "age", "color",
+            "location", "ownerId", "active", "adopterId", "imageKey", "imagePlaceholder", "version", "views");
+
+    private FieldSelection() {
+    }
+
+    /**
+     * Parses the value of a "fields" parameter.
+     *
+     * @param fields  comma-separated property names (may be null)
+     * @param allowed the properties that can be selected
+     * @return the selected properties, sorted and including "id", or null to select all of them
+     * @throws IllegalArgumentException if a property cannot be selected
+     */
+    public static Set<String> parse(String fields, List<String> allowed) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> selected = new TreeSet<>();
+        selected.add("id");
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!allowed.contains(name)) {
+                throw new IllegalArgumentException("Unknown field " + name);
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.adoptionpostservice.service;
+
+import org.example.adoptionpostservice.dto.GeoPoint;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Offline geocoder for the locations used in adoption posts.
+ * Coordinates are read from a gazetteer bundled with the application (gazetteer/province.csv),
+ * so geocoding needs no external service. Names are matched ignoring case, accents and punctuation.
+ */
+@Service
+public class GazetteerService {
+
+    private static final String GAZETTEER = "gazetteer/province.csv";
+
+    private final Map<String, GeoPoint> places = new HashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @throws IOException if the gazetteer cannot be read
+     */
+    public GazetteerService() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(GAZETTEER).getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            boolean header = true;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                if (header) { // name;latitude;longitude
+                    header = false;
+                    continue;
+                }
+                String[] fields = line.split(";");
+                places.put(normalize(fields[0]),
+                        new GeoPoint(Double.parseDouble(fields[1]), Double.parseDouble(fields[2])));
+            }
+        }
+    }
+
+    /**
+     * Finds the coordinates of a place.
+     *
+     * @param name the place name (e.g. "Torino", "forli")
+     * @return the coordinates, or empty if the place is not in the gazetteer
+     */
+    public Optional<GeoPoint> locate(String name) {
+        return name == null ? Optional.empty() : Optional.ofNullable(places.get(normalize(name)));
+    }
+
+    private static String normalize(String name) {
+        String folded = Normalizer.normalize(name, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        return folded.toLowerCase(Locale.ITALIAN).replaceAll("[^a-z0-9]+", " ").trim();
+    }
+}
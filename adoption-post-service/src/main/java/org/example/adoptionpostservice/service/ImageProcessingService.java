@@ -0,0 +1,233 @@
+package org.example.adoptionpostservice.service;
+
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Service producing the derived versions of an uploaded image:
+ * fixed-width JPEG thumbnails, saved as variants in the image store,
+ * and a tiny low-quality placeholder returned inline as a data URI.
+ * The size declared by an image is checked before it is decoded, since a small file can declare
+ * a huge one, and large images are decoded subsampled, as only small versions of them are produced.
+ */
+@Service
+public class ImageProcessingService {
+
+    /**
+     * Fixed thumbnail sizes, identified by the name used in image URLs.
+     */
+    public enum ThumbnailSize {
+        SMALL("small", 160),
+        MEDIUM("medium", 320),
+        LARGE("large", 640);
+
+        private final String variant;
+        private final int width;
+
+        ThumbnailSize(String variant, int width) {
+            this.variant = variant;
+            this.width = width;
+        }
+
+        public String getVariant() {
+            return variant;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * Finds a thumbnail size by its variant name.
+         *
+         * @param variant the variant name (e.g. "small")
+         * @return the matching size, or empty if unknown
+         */
+        public static Optional<ThumbnailSize> fromVariant(String variant) {
+            return Arrays.stream(values())
+                    .filter(size -> size.variant.equalsIgnoreCase(variant))
+                    .findFirst();
+        }
+    }
+
+    private static final int PLACEHOLDER_WIDTH = 12;
+
+    private static final float THUMBNAIL_QUALITY = 0.8f;
+
+    // images declaring more pixels, or a longer side, are not decoded
+    private static final long MAX_PIXELS = 50_000_000L;
+    private static final int MAX_SIDE = 16_384;
+
+    // images are decoded at no less than twice the width of the largest thumbnail
+    private static final int DECODED_MIN_WIDTH = 2 * ThumbnailSize.LARGE.getWidth();
+
+    private final ImageStorageService imageStorageService;
+
+    public ImageProcessingService(ImageStorageService imageStorageService) {
+        this.imageStorageService = imageStorageService;
+    }
+
+    /**
+     * Generates the thumbnails of a stored image (if not already present) and its placeholder.
+     * Decoding is slow: callers run it before starting the transaction that saves the post.
+     *
+     * @param imageKey key of the original image in the image store
+     * @return the placeholder as a data URI, or null if the image is missing, too large or cannot be decoded
+     */
+    public String createVariants(String imageKey) {
+        Path original = imageStorageService.find(imageKey).orElse(null);
+        if (original == null) {
+            return null;
+        }
+        try {
+            BufferedImage image = read(original, imageKey);
+            if (image == null) {
+                return null;
+            }
+            for (ThumbnailSize size : ThumbnailSize.values()) {
+                // thumbnails depend only on the original content, so existing ones are reused
+                if (imageStorageService.findVariant(imageKey, size.getVariant()).isEmpty()) {
+                    byte[] thumbnail = encodeJpeg(resize(image, size.getWidth()), THUMBNAIL_QUALITY);
+                    imageStorageService.storeVariant(imageKey, size.getVariant(), thumbnail);
+                }
+            }
+            return createPlaceholder(image);
+        } catch (IOException e) {
+            System.out.println("Errore durante l'elaborazione dell'immagine " + imageKey + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Checks that some bytes are an image that can be decoded, from the format and the size it declares,
+     * without decoding it (e.g. before storing an image that may be anything).
+     *
+     * @param content the image content
+     * @return true if the content is in a known image format and declares a size that is decoded
+     */
+    public boolean isImage(byte[] content) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return isDecodedSize(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Decodes an image, after checking the size it declares.
+     *
+     * @param path     the image file
+     * @param imageKey key of the image, for the log
+     * @return the image, subsampled if much wider than the largest thumbnail,
+     *         or null if it cannot be decoded or is too large
+     * @throws IOException if the file cannot be read or decoded
+     */
+    private BufferedImage read(Path path, String imageKey) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(path.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                System.out.println("Immagine non decodificabile: " + imageKey);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if (!isDecodedSize(width, height)) {
+                    System.out.println("Immagine troppo grande (" + width + "x" + height + "): " + imageKey);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, width / DECODED_MIN_WIDTH);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static boolean isDecodedSize(int width, int height) {
+        return width <= MAX_SIDE && height <= MAX_SIDE && (long) width * height <= MAX_PIXELS;
+    }
+
+    /**
+     * Builds a few-pixels-wide PNG of the image, to be shown blurred while the thumbnail loads.
+     *
+     * @param image the decoded original image
+     * @return the placeholder as a data URI
+     * @throws IOException if encoding fails
+     */
+    private String createPlaceholder(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(resize(image, PLACEHOLDER_WIDTH), "png", out);
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    /**
+     * Scales an image down to the given width, keeping its aspect ratio (images are never enlarged).
+     *
+     * @param image the image to scale
+     * @param width target width
+     * @return the scaled RGB image
+     */
+    private BufferedImage resize(BufferedImage image, int width) {
+        int targetWidth = Math.min(width, image.getWidth());
+        int targetHeight = Math.max(1, Math.round((float) image.getHeight() * targetWidth / image.getWidth()));
+        BufferedImage resized = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resized.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return resized;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
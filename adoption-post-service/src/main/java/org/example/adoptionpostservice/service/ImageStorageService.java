@@ -0,0 +1,186 @@
+package org.example.adoptionpostservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed store for adoption post images.
+ * Every image is saved on local disk under the SHA-256 hash of its bytes,
+ * so identical uploads are stored only once and a key always identifies the same content.
+ * Derived variants of an image (e.g. thumbnails) are stored next to it, named after the original key.
+ */
+@Service
+public class ImageStorageService {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private static final Pattern VARIANT_PATTERN = Pattern.compile("[a-z0-9]{1,16}");
+
+    private final Path root;
+
+    /**
+     * Constructor
+     *
+     * @param rootDir directory where images are stored
+     * @throws IOException if the directory cannot be created
+     */
+    public ImageStorageService(@Value("${app.images.dir}") String rootDir) throws IOException {
+        this.root = Path.of(rootDir).toAbsolutePath().normalize();
+        Files.createDirectories(this.root);
+    }
+
+    /**
+     * Stores an image, streaming it to a temporary file while hashing it.
+     * If an image with the same content already exists, the temporary copy is discarded.
+     *
+     * @param in the image content
+     * @return the key (hex SHA-256) of the stored image
+     * @throws IOException if the image cannot be written
+     */
+    public String store(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        Path tmp = Files.createTempFile(root, "upload-", ".tmp");
+        try {
+            try (DigestInputStream digestIn = new DigestInputStream(in, digest);
+                 OutputStream out = Files.newOutputStream(tmp)) {
+                digestIn.transferTo(out);
+            }
+            String key = HexFormat.of().formatHex(digest.digest());
+            Path target = pathOf(key);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // same content stored concurrently by another upload
+                }
+            }
+            return key;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Looks up the file holding the image with the given key.
+     *
+     * @param key image key
+     * @return the image path, or empty if the key is malformed or unknown
+     */
+    public Optional<Path> find(String key) {
+        if (!isValidKey(key)) {
+            return Optional.empty();
+        }
+        Path path = pathOf(key);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * Stores a variant derived from an image, replacing any previous one atomically.
+     *
+     * @param key     key of the original image
+     * @param variant name of the variant (lowercase letters and digits)
+     * @param bytes   content of the variant
+     * @throws IOException if the variant cannot be written
+     */
+    public void storeVariant(String key, String variant, byte[] bytes) throws IOException {
+        Path target = variantPathOf(key, variant);
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), "variant-", ".tmp");
+        try {
+            Files.write(tmp, bytes);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Looks up a variant derived from an image.
+     *
+     * @param key     key of the original image
+     * @param variant name of the variant
+     * @return the variant path, or empty if the key or variant are malformed or the variant does not exist
+     */
+    public Optional<Path> findVariant(String key, String variant) {
+        if (!isValidKey(key) || variant == null || !VARIANT_PATTERN.matcher(variant).matches()) {
+            return Optional.empty();
+        }
+        Path path = variantPathOf(key, variant);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * Detects the media type of a stored image from its first bytes.
+     *
+     * @param path the image path
+     * @return the media type, or "application/octet-stream" if unknown
+     * @throws IOException if the file cannot be read
+     */
+    public String probeContentType(Path path) throws IOException {
+        byte[] header = new byte[12];
+        int read;
+        try (InputStream in = Files.newInputStream(path)) {
+            read = in.readNBytes(header, 0, header.length);
+        }
+        if (read >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (read >= 4 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+            return "image/png";
+        }
+        if (read >= 4 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F' && header[3] == '8') {
+            return "image/gif";
+        }
+        if (read >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "image/webp";
+        }
+        return "application/octet-stream";
+    }
+
+    /**
+     * Checks that a key has the format of a hex SHA-256 hash,
+     * so it can be safely used to build a file path.
+     *
+     * @param key the key to check
+     * @return true if the key is well-formed
+     */
+    public static boolean isValidKey(String key) {
+        return key != null && KEY_PATTERN.matcher(key).matches();
+    }
+
+    // Images are sharded in two directory levels to keep directories small
+    private Path pathOf(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private Path variantPathOf(String key, String variant) {
+        if (!isValidKey(key) || !VARIANT_PATTERN.matcher(variant).matches()) {
+            throw new IllegalArgumentException("Invalid image variant " + key + "/" + variant);
+        }
+        return pathOf(key).resolveSibling(key + "_" + variant);
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.adoptionpostservice.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits Italian text into the terms stored in the full-text index.
+ * Text is lowercased, accents are removed, common words are dropped
+ * and each word is reduced by a light stemmer that removes gender and number endings,
+ * so that e.g. "gatto", "gatta" and "gatti" all become "gatt".
+ */
+public final class ItalianAnalyzer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "ad", "al", "allo", "alla", "ai", "agli", "alle", "anche", "c", "che", "chi", "ci", "coi",
+            "col", "come", "con", "cui", "da", "dal", "dallo", "dalla", "dai", "dagli", "dalle", "del",
+            "dello", "della", "dei", "degli", "delle", "di", "e", "ed", "fra", "gli", "ha", "hanno", "ho",
+            "i", "il", "in", "io", "l", "la", "le", "lei", "lo", "loro", "lui", "ma", "mi", "mio", "mia",
+            "molto", "ne", "nei", "negli", "nel", "nello", "nella", "nelle", "noi", "non", "o", "per",
+            "perche", "piu", "poco", "qui", "quel", "quella", "quello", "questa", "questo", "se", "si",
+            "sia", "sono", "su", "sua", "sue", "sui", "sul", "sulla", "suo", "suoi", "ti", "tra", "tu",
+            "un", "una", "uno", "va", "vi", "voi");
+
+    // words shorter than this are not stemmed
+    private static final int MIN_STEM_LENGTH = 4;
+
+    private ItalianAnalyzer() {
+    }
+
+    /**
+     * Extracts the index terms of a text, in order of appearance (duplicates included).
+     *
+     * @param text the text to analyze (may be null)
+     * @return the stemmed terms
+     */
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        for (String word : SEPARATORS.split(folded.toLowerCase(Locale.ITALIAN))) {
+            if (!word.isEmpty() && !STOPWORDS.contains(word)) {
+                terms.add(stem(word));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Removes the final vowel of a word, together with the "i" or "h" before it
+     * when it is part of the ending (e.g. "micio"/"micia" → "mic", "giochi" → "gioc").
+     *
+     * @param word lowercase word without accents
+     * @return the stem of the word
+     */
+    static String stem(String word) {
+        int length = word.length();
+        if (length < MIN_STEM_LENGTH) {
+            return word;
+        }
+        char last = word.charAt(length - 1);
+        char previous = word.charAt(length - 2);
+        return switch (last) {
+            case 'e', 'i' -> word.substring(0, previous == 'i' || previous == 'h' ? length - 2 : length - 1);
+            case 'a', 'o' -> word.substring(0, previous == 'i' ? length - 2 : length - 1);
+            default -> word;
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.adoptionpostservice.service;
+
+import org.example.adoptionpostservice.dto.AdoptionPostIndexEntry;
+import org.example.adoptionpostservice.model.AdoptionPost;
+import org.example.adoptionpostservice.repository.AdoptionPostRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Moves the images saved in the image_base64 column of the posts, before the image store existed,
+ * to the image store. Run at startup by DataInitializer.
+ * <p>
+ * For each post the base64 text is decoded while it is stored, the thumbnails and the placeholder are created,
+ * and only then, in a short transaction, the post gets its image key and placeholder and the column is cleared.
+ * A post whose image cannot be decoded keeps its column, and is tried again at the next startup.
+ * Replicas starting together may store the same image twice: the store is content-addressed,
+ * and only the first update of a post is applied.
+ */
+@Component
+public class LegacyImageMigration {
+
+    private static final String FIND_POSTS = "select id from %s.adoption_posts "
+            + "where image_base64 is not null and image_key is null order by id";
+
+    private static final String READ_IMAGE = "select image_base64 from %s.adoption_posts where id = ?";
+
+    private static final String CLEAR_IMAGE = "update %s.adoption_posts set image_base64 = null where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final AdoptionPostRepository repository;
+
+    private final ImageStorageService imageStorageService;
+
+    private final ImageProcessingService imageProcessingService;
+
+    private final PostChangeService postChangeService;
+
+    private final String findPosts;
+
+    private final String readImage;
+
+    private final String clearImage;
+
+    /**
+     * Constructor
+     *
+     * @param jdbcTemplate           used to read and clear the image_base64 column, not mapped by AdoptionPost
+     * @param transactionManager     used to update each post in its own transaction
+     * @param repository             the adoption post repository
+     * @param imageStorageService    the store receiving the images
+     * @param imageProcessingService creates the thumbnails and the placeholder of each image
+     * @param postChangeService      propagates the new image of each post
+     * @param schema                 schema of the adoption_posts table
+     */
+    public LegacyImageMigration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                AdoptionPostRepository repository, ImageStorageService imageStorageService,
+                                ImageProcessingService imageProcessingService, PostChangeService postChangeService,
+                                @Value("${spring.jpa.properties.hibernate.default_schema}") String schema) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.repository = repository;
+        this.imageStorageService = imageStorageService;
+        this.imageProcessingService = imageProcessingService;
+        this.postChangeService = postChangeService;
+        this.findPosts = FIND_POSTS.formatted(schema);
+        this.readImage = READ_IMAGE.formatted(schema);
+        this.clearImage = CLEAR_IMAGE.formatted(schema);
+    }
+
+    /**
+     * Moves the images of all the posts still having one in the image_base64 column.
+     *
+     * @return number of posts migrated
+     */
+    public int migrate() {
+        List<Long> postIds = jdbcTemplate.queryForList(findPosts, Long.class);
+        int migrated = 0;
+        for (Long postId : postIds) {
+            try {
+                if (migrate(postId)) {
+                    migrated++;
+                }
+            } catch (IOException | IllegalArgumentException | DataAccessException e) {
+                System.out.println("Errore durante la migrazione dell'immagine dell'annuncio " + postId + ": "
+                        + e.getMessage());
+            }
+        }
+        if (!postIds.isEmpty()) {
+            System.out.println(">>> Migrated " + migrated + " of " + postIds.size() + " images to the image store");
+        }
+        return migrated;
+    }
+
+    private boolean migrate(Long postId) throws IOException {
+        // one image at a time, decoded while it is written to the store
+        String base64 = jdbcTemplate.queryForObject(readImage, String.class, postId);
+        if (base64 == null) {
+            return false;
+        }
+        String imageKey;
+        try (InputStream in = Base64.getMimeDecoder()
+                .wrap(new ByteArrayInputStream(base64.getBytes(StandardCharsets.US_ASCII)))) {
+            imageKey = imageStorageService.store(in);
+        }
+        String placeholder = imageProcessingService.createVariants(imageKey);
+        if (placeholder == null) {
+            return false; // not an image: left in the column
+        }
+
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            AdoptionPost post = repository.findById(postId).orElse(null);
+            if (post == null) {
+                return false;
+            }
+            if (post.getImageKey() == null) { // not migrated by another replica, nor replaced by the owner
+                AdoptionPostIndexEntry before = AdoptionPostIndexEntry.of(post);
+                post.setImageKey(imageKey);
+                post.setImagePlaceholder(placeholder);
+                AdoptionPost updated = repository.saveAndFlush(post);
+                postChangeService.postChanged(postId, before, AdoptionPostIndexEntry.of(updated));
+            }
+            jdbcTemplate.update(clearImage, postId);
+            return true;
+        }));
+    }
+}
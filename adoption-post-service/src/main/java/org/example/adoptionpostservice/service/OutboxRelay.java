@@ -0,0 +1,117 @@
+package org.example.adoptionpostservice.service;
+
+import org.example.adoptionpostservice.model.OutboxEvent;
+import org.example.adoptionpostservice.repository.OutboxEventRepository;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Publishes the messages of the outbox table to RabbitMQ in batches.
+ * Each batch is locked with SKIP LOCKED, so replicas can relay concurrently,
+ * published on one channel and marked as sent only after the broker has confirmed all of it.
+ * If publishing fails the transaction is rolled back and the batch is retried at the next run
+ * (consumers may then receive a message twice).
+ */
+@Component
+public class OutboxRelay {
+
+    @Value("${app.rabbitmq.exchange}")
+    private String adottatoExchange;
+
+    @Value("${app.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.outbox.confirm-timeout:PT5S}")
+    private Duration confirmTimeout;
+
+    @Value("${app.outbox.retention:P1D}")
+    private Duration retention;
+
+    private final OutboxEventRepository repository;
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Constructor
+     *
+     * @param repository the outbox event repository
+     * @param rabbitTemplate template publishing the messages (publisher confirms must be enabled)
+     * @param transactionManager used to run each batch in its own transaction
+     */
+    public OutboxRelay(OutboxEventRepository repository, RabbitTemplate rabbitTemplate,
+                       PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Publishes the pending messages, one batch after the other until the outbox is empty.
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.relay-interval:PT1S}")
+    public void relay() {
+        try {
+            Integer published;
+            do {
+                published = transactionTemplate.execute(status -> publishBatch());
+            } while (published != null && published == batchSize);
+        } catch (RuntimeException e) {
+            System.out.println("Errore durante la pubblicazione dei messaggi in outbox: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the messages sent longer than the retention period ago.
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.cleanup-interval:PT1H}")
+    public void cleanup() {
+        transactionTemplate.executeWithoutResult(status ->
+                repository.deleteSentBefore(LocalDateTime.now().minus(retention)));
+    }
+
+    /**
+     * Publishes one batch of pending messages and marks them as sent.
+     *
+     * @return number of published messages
+     */
+    private int publishBatch() {
+        List<OutboxEvent> events = repository.lockUnsent(PageRequest.of(0, batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+        rabbitTemplate.invoke(operations -> {
+            for (OutboxEvent event : events) {
+                operations.send(adottatoExchange, event.getRoutingKey(), toMessage(event));
+            }
+            operations.waitForConfirmsOrDie(confirmTimeout.toMillis());
+            return null;
+        });
+        LocalDateTime sentAt = LocalDateTime.now();
+        events.forEach(event -> event.setSentAt(sentAt));
+        return events.size();
+    }
+
+    private static Message toMessage(OutboxEvent event) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setContentEncoding(StandardCharsets.UTF_8.name());
+        properties.setHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME, event.getPayloadType());
+        properties.setMessageId(String.valueOf(event.getId()));
+        return new Message(event.getPayload().getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.adoptionpostservice.service;
+
+import org.example.adoptionpostservice.model.OutboxEvent;
+import org.example.adoptionpostservice.repository.OutboxEventRepository;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * Writes the RabbitMQ messages to the outbox table, in the transaction of the change they announce.
+ * The messages are published by {@link OutboxRelay} once the transaction has committed,
+ * so a request never waits for the broker and no message is lost if the broker is down.
+ */
+@Service
+public class OutboxService {
+
+    private final OutboxEventRepository repository;
+
+    private final MessageConverter messageConverter;
+
+    public OutboxService(OutboxEventRepository repository, MessageConverter messageConverter) {
+        this.repository = repository;
+        this.messageConverter = messageConverter;
+    }
+
+    /**
+     * Adds a message to the outbox. It is converted now, with the same converter used to publish,
+     * so it reaches consumers exactly as if it had been sent directly.
+     *
+     * @param routingKey routing key on the adottato exchange
+     * @param payload    the message payload
+     * @throws org.springframework.transaction.IllegalTransactionStateException if no transaction is active
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String routingKey, Object payload) {
+        Message message = messageConverter.toMessage(payload, new MessageProperties());
+        OutboxEvent event = OutboxEvent.builder()
+                .routingKey(routingKey)
+                .payloadType(message.getMessageProperties().getHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME))
+                .payload(new String(message.getBody(), StandardCharsets.UTF_8))
+                .createdAt(LocalDateTime.now())
+                .build();
+        repository.save(event);
+    }
+}
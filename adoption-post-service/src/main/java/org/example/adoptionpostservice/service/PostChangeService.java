@@ -0,0 +1,135 @@
+package org.example.adoptionpostservice.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.adoptionpostservice.config.ReplicationLagGuard;
+import org.example.adoptionpostservice.dto.AdoptionPostIndexEntry;
+import org.example.adoptionpostservice.dto.PostChangedMessage;
+import org.example.adoptionpostservice.model.AdoptionPost;
+import org.example.adoptionpostservice.model.PostChange;
+import org.example.adoptionpostservice.repository.PostChangeRepository;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Propagates changes to adoption posts to the in-memory structures derived from them
+ * (search index, similar posts index, caches and second-level cache), on this replica and, through RabbitMQ, on all the others,
+ * and records them in the change feed read by clients to sync incrementally.
+ */
+@Component
+public class PostChangeService {
+
+    @Value("${app.rabbitmq.routingkey.post-changed}")
+    private String postChangedRoutingKey;
+
+    // identifies this replica, so it can skip the changes it has already applied
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final AdoptionPostIndex searchIndex;
+
+    private final SimilarPostIndex similarIndex;
+
+    private final AdoptionPostCache cache;
+
+    private final OutboxService outboxService;
+
+    private final PostChangeRepository changeRepository;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final PostViewCounter viewCounter;
+
+    private final ObjectProvider<ReplicationLagGuard> replicationLagGuard;
+
+    public PostChangeService(AdoptionPostIndex searchIndex, SimilarPostIndex similarIndex,
+                             AdoptionPostCache cache, PostViewCounter viewCounter,
+                             OutboxService outboxService, PostChangeRepository changeRepository,
+                             EntityManagerFactory entityManagerFactory,
+                             ObjectProvider<ReplicationLagGuard> replicationLagGuard) {
+        this.searchIndex = searchIndex;
+        this.similarIndex = similarIndex;
+        this.cache = cache;
+        this.viewCounter = viewCounter;
+        this.outboxService = outboxService;
+        this.changeRepository = changeRepository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.replicationLagGuard = replicationLagGuard;
+    }
+
+    /**
+     * Records a change to a post in the change feed, broadcasts it to the other replicas through the outbox,
+     * and applies it locally once the current transaction has committed.
+     * Must be called inside the transaction that changes the post.
+     *
+     * @param postId post ID
+     * @param before the post before the change (null if created)
+     * @param after  the post after the change (null if deleted)
+     */
+    public void postChanged(Long postId, AdoptionPostIndexEntry before, AdoptionPostIndexEntry after) {
+        // numbered again when the transaction commits, in commit order (see V5__number_post_changes_at_commit)
+        changeRepository.save(PostChange.builder()
+                .postId(postId)
+                .deleted(after == null)
+                .changedAt(LocalDateTime.now())
+                .build());
+        outboxService.enqueue(postChangedRoutingKey, new PostChangedMessage(instanceId, postId, before, after));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply(postId, before, after);
+            }
+        });
+    }
+
+    /**
+     * Handles a change broadcast by a replica.
+     *
+     * @param message the change
+     */
+    @RabbitListener(queues = "#{postChangedQueue.name}")
+    public void handlePostChanged(PostChangedMessage message) {
+        if (!instanceId.equals(message.origin())) {
+            apply(message.postId(), message.before(), message.after());
+        }
+    }
+
+    /**
+     * Compacts the change feed, keeping only the last change of each post.
+     */
+    @Scheduled(fixedDelayString = "${app.changes.compaction-interval:PT1H}")
+    @Transactional
+    public void compactChanges() {
+        int deleted = changeRepository.deleteSuperseded();
+        if (deleted > 0) {
+            System.out.println("Compattazione del feed delle modifiche: " + deleted + " modifiche rimosse");
+        }
+    }
+
+    private void apply(Long postId, AdoptionPostIndexEntry before, AdoptionPostIndexEntry after) {
+        if (after != null) {
+            searchIndex.put(after);
+            similarIndex.put(after);
+        } else {
+            searchIndex.remove(postId);
+            similarIndex.remove(postId);
+            viewCounter.remove(postId);
+        }
+        evict(postId, before, after);
+        // a read from a lagging database replica may cache the old post again in the meantime
+        replicationLagGuard.ifAvailable(guard -> guard.afterLag(() -> evict(postId, before, after)));
+    }
+
+    private void evict(Long postId, AdoptionPostIndexEntry before, AdoptionPostIndexEntry after) {
+        cache.evict(postId, before, after);
+        // on this replica Hibernate has already updated the entry, on the others it is stale
+        entityManagerFactory.getCache().evict(AdoptionPost.class, postId);
+    }
+}
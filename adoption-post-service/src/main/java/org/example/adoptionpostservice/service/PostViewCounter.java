@@ -0,0 +1,314 @@
+package org.example.adoptionpostservice.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Array;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Counts the views of the adoption posts.
+ * Views are added to an in-memory counter per post (a LongAdder, so concurrent views of the same post
+ * do not contend), and every few seconds the deltas of all the posts are added to the post_views table
+ * with a single upsert per batch.
+ * Counts read from the table are kept for a while, so showing the views of a post does not read the database
+ * every time; they include the views counted by this replica and not yet written.
+ * The counters of the posts not viewed nor shown for a while are dropped after a flush,
+ * so the map does not keep a counter for every post ever viewed.
+ */
+@Component
+public class PostViewCounter {
+
+    // adds the deltas of a batch and returns the new totals; the views of deleted posts are dropped
+    private static final String ADD_VIEWS = "insert into %1$s.post_views (post_id, views) "
+            + "select d.post_id, d.views from unnest(?, ?) as d(post_id, views) "
+            + "where exists (select 1 from %1$s.adoption_posts p where p.id = d.post_id) "
+            + "on conflict (post_id) do update set views = post_views.views + excluded.views "
+            + "returning post_id, views";
+
+    private static final String FIND_VIEWS = "select post_id, views from %s.post_views where post_id = any (?)";
+
+    /**
+     * Views of a post: those written to the database, as last read, those being written by a flush,
+     * and those counted since then.
+     * A flush moves views from pending to flushing, and from flushing to stored, holding the lock only for the
+     * move: readers see each view in exactly one of them, so the count they see never goes down.
+     */
+    private static final class Counter {
+
+        final LongAdder pending = new LongAdder();
+
+        final StampedLock lock = new StampedLock();
+
+        // fields below are written holding the write lock
+        volatile long flushing;
+
+        volatile long stored;
+
+        volatile long storedAt; // System.nanoTime() of the last read, 0 if never read
+
+        long views() {
+            long stamp = lock.tryOptimisticRead();
+            long views = pending.sum() + flushing + stored;
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    views = pending.sum() + flushing + stored;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return views;
+        }
+
+        /**
+         * Returns a stamp to pass to {@link #read} after reading the views of the post from the database,
+         * or 0 if a flush is writing views of the post, which the database may include or not.
+         */
+        long beforeRead() {
+            long stamp = lock.tryOptimisticRead();
+            return flushing == 0 ? stamp : 0;
+        }
+
+        /**
+         * Stores the views read from the database, unless a flush has moved views in the meantime.
+         *
+         * @return the views of the post
+         */
+        long read(long stamp, long views) {
+            long writeStamp = stamp == 0 ? 0 : lock.tryConvertToWriteLock(stamp);
+            if (writeStamp != 0) {
+                try {
+                    store(views);
+                } finally {
+                    lock.unlockWrite(writeStamp);
+                }
+            } else if (storedAt == 0) {
+                return views + pending.sum(); // first read during the first flush: without the views being written
+            }
+            return views();
+        }
+
+        /**
+         * Moves the views counted since the last flush to those being written.
+         *
+         * @return the views to write
+         */
+        long startFlush() {
+            long stamp = lock.writeLock();
+            try {
+                // views counted while they are moved stay in pending for the next flush
+                long delta = pending.sum();
+                pending.add(-delta);
+                flushing += delta;
+                return flushing; // including those of a flush that could not write them
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Ends a flush that has written the views.
+         *
+         * @param total the views of the post after the write, or null if the post was deleted
+         */
+        void flushed(Long total) {
+            long stamp = lock.writeLock();
+            try {
+                if (total != null) {
+                    store(total);
+                }
+                flushing = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean idle(long now, long maxAgeNanos) {
+            return pending.sum() == 0 && flushing == 0 && (storedAt == 0 || now - storedAt >= maxAgeNanos);
+        }
+
+        private void store(long views) {
+            // totals only grow: a lower one was read before a flush of this replica committed
+            stored = Math.max(stored, views);
+            storedAt = System.nanoTime();
+        }
+    }
+
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    // counters dropped by the last flush: a view may still be added to them by a request that got them from
+    // the map just before they were dropped, so the next flush writes their views too (guarded by this)
+    private Map<Long, Counter> retired = new HashMap<>();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String addViews;
+
+    private final String findViews;
+
+    private final int batchSize;
+
+    private final long maxAgeNanos;
+
+    /**
+     * Constructor
+     *
+     * @param jdbcTemplate used to write and read the counts
+     * @param schema       schema of the post_views table
+     * @param batchSize    posts whose views are written with a single statement
+     * @param maxAge       how long counts read from the database are used, before reading them again
+     *                     (to see the views counted by the other replicas)
+     */
+    public PostViewCounter(JdbcTemplate jdbcTemplate,
+                           @Value("${spring.jpa.properties.hibernate.default_schema}") String schema,
+                           @Value("${app.views.batch-size:1000}") int batchSize,
+                           @Value("${app.views.max-age:PT1M}") Duration maxAge) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.addViews = ADD_VIEWS.formatted(schema);
+        this.findViews = FIND_VIEWS.formatted(schema);
+        this.batchSize = batchSize;
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    /**
+     * Counts a view of a post.
+     *
+     * @param postId post ID
+     */
+    public void recordView(Long postId) {
+        Counter counter = counters.get(postId);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(postId, id -> new Counter());
+        }
+        counter.pending.increment();
+    }
+
+    /**
+     * Returns the number of views of some posts.
+     *
+     * @param postIds post IDs
+     * @return views by post ID (0 for posts never viewed)
+     */
+    public Map<Long, Long> getViews(Collection<Long> postIds) {
+        Map<Long, Long> views = new HashMap<>();
+        List<Long> toRead = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Long postId : postIds) {
+            Counter counter = counters.get(postId);
+            if (counter != null && counter.storedAt != 0 && now - counter.storedAt < maxAgeNanos) {
+                views.put(postId, counter.views());
+            } else {
+                toRead.add(postId);
+            }
+        }
+        if (toRead.isEmpty()) {
+            return views;
+        }
+
+        Map<Long, Long> stamps = new HashMap<>();
+        for (Long postId : toRead) {
+            stamps.put(postId, counters.computeIfAbsent(postId, id -> new Counter()).beforeRead());
+        }
+        Map<Long, Long> stored = new HashMap<>();
+        jdbcTemplate.query(findViews,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", toRead.toArray())),
+                rs -> {
+                    stored.put(rs.getLong("post_id"), rs.getLong("views"));
+                });
+        for (Long postId : toRead) {
+            Counter counter = counters.computeIfAbsent(postId, id -> new Counter());
+            views.put(postId, counter.read(stamps.get(postId), stored.getOrDefault(postId, 0L)));
+        }
+        return views;
+    }
+
+    /**
+     * Forgets a deleted post.
+     *
+     * @param postId post ID
+     */
+    public void remove(Long postId) {
+        counters.remove(postId);
+    }
+
+    /**
+     * Adds the views counted since the last flush to the database.
+     * If a batch cannot be written its views are kept, and written by the next flush.
+     * Then the counters with no views to write and no recent count are dropped.
+     */
+    @Scheduled(fixedDelayString = "${app.views.flush-interval:PT5S}")
+    public synchronized void flush() {
+        for (Map.Entry<Long, Counter> entry : retired.entrySet()) {
+            long late = entry.getValue().pending.sumThenReset();
+            if (late > 0) {
+                counters.computeIfAbsent(entry.getKey(), id -> new Counter()).pending.add(late);
+            }
+        }
+        retired = new HashMap<>();
+
+        List<Long> postIds = new ArrayList<>();
+        List<Counter> flushed = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        for (Map.Entry<Long, Counter> entry : counters.entrySet()) {
+            Counter counter = entry.getValue();
+            if (counter.pending.sum() > 0 || counter.flushing > 0) {
+                postIds.add(entry.getKey());
+                flushed.add(counter);
+                deltas.add(counter.startFlush());
+            }
+        }
+        for (int from = 0; from < postIds.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, postIds.size());
+            List<Long> batchIds = postIds.subList(from, to);
+            List<Counter> batchCounters = flushed.subList(from, to);
+            try {
+                Map<Long, Long> totals = addViews(batchIds, deltas.subList(from, to));
+                for (int i = 0; i < batchIds.size(); i++) {
+                    batchCounters.get(i).flushed(totals.get(batchIds.get(i))); // null for deleted posts
+                }
+            } catch (DataAccessException e) {
+                System.out.println("Errore nel salvataggio delle visualizzazioni di " + batchIds.size()
+                        + " annunci: " + e.getMessage());
+            }
+        }
+
+        long now = System.nanoTime();
+        for (Map.Entry<Long, Counter> entry : counters.entrySet()) {
+            Counter counter = entry.getValue();
+            if (counter.idle(now, maxAgeNanos) && counters.remove(entry.getKey(), counter)) {
+                retired.put(entry.getKey(), counter);
+            }
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private Map<Long, Long> addViews(List<Long> postIds, List<Long> deltas) {
+        Map<Long, Long> totals = new HashMap<>();
+        jdbcTemplate.query(addViews, ps -> {
+            Array ids = ps.getConnection().createArrayOf("bigint", postIds.toArray());
+            Array views = ps.getConnection().createArrayOf("bigint", deltas.toArray());
+            ps.setArray(1, ids);
+            ps.setArray(2, views);
+        }, rs -> {
+            totals.put(rs.getLong("post_id"), rs.getLong("views"));
+        });
+        return totals;
+    }
+}
@@ -1,13 +1,29 @@
 package org.example.adoptionpostservice.service;
 
 import org.example.shareddtos.dto.RequestAcceptedMessageRabbitMQDto;
-import org.example.adoptionpostservice.model.AdoptionPost;
+import org.example.adoptionpostservice.dto.AdoptionPostIndexEntry;
 import org.example.adoptionpostservice.repository.AdoptionPostRepository;
 import org.example.shareddtos.dto.AdoptionPostSummaryDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Service responsible for interacting with RabbitMQ.
@@ -16,47 +32,154 @@ import org.springframework.stereotype.Component;
 @Component
 public class RabbitMQService {
 
-    @Value("${app.rabbitmq.exchange}")
-    private String adottatoExchange;
+    // reason for which a message was moved to the dead-letter queue
+    private static final String FAILURE_HEADER = "x-failure-reason";
 
     @Value("${app.rabbitmq.routingkey.new-post}")
     private String newPostRoutingKey;
 
     private final AdoptionPostRepository repository;
 
+    private final OutboxService outboxService;
+
+    private final PostChangeService postChangeService;
+
+    private final TransactionTemplate transactionTemplate;
+
     private final RabbitTemplate rabbitTemplate;
 
-    public RabbitMQService(AdoptionPostRepository repository, RabbitTemplate rabbitTemplate) {
+    private final ObjectMapper objectMapper;
+
+    private final String deadLetterQueue;
+
+    public RabbitMQService(AdoptionPostRepository repository, OutboxService outboxService,
+                           PostChangeService postChangeService, PlatformTransactionManager transactionManager,
+                           RabbitTemplate rabbitTemplate, ObjectMapper objectMapper,
+                           @Value("${app.rabbitmq.queue.chat-request-accepted-dead-letter}") String deadLetterQueue) {
         this.repository = repository;
+        this.outboxService = outboxService;
+        this.postChangeService = postChangeService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.rabbitTemplate = rabbitTemplate;
+        this.objectMapper = objectMapper;
+        this.deadLetterQueue = deadLetterQueue;
     }
 
     /**
-     * Sends a new adoption post event to the specified RabbitMQ exchange using the routing key
+     * Sends a new adoption post event to the specified RabbitMQ exchange using the routing key.
+     * The event is written to the outbox and published after the caller's transaction commits.
      *
      * @param dto the adoption post summary data to send
      */
     public void sendNewPostEvent(AdoptionPostSummaryDto dto) {
-        rabbitTemplate.convertAndSend(adottatoExchange, newPostRoutingKey, dto);
+        outboxService.enqueue(newPostRoutingKey, dto);
     }
 
     /**
-     * Handles incoming RabbitMQ messages when an adoption request is accepted.
-     * It sets the adopter ID on the corresponding adoption post
+     * Handles incoming RabbitMQ messages when an adoption request is accepted, in batches.
+     * Each message sets the adopter ID on the corresponding adoption post with a single conditional update,
+     * applied only if the post is still active: a message for a post that is missing or already adopted
+     * (e.g. by a concurrent acceptance) is reported as a conflict and ignored.
+     * <p>
+     * The messages of a batch are applied in one transaction. A message that cannot be read, or that fails,
+     * must not send the whole batch back to the queue forever: messages that cannot be read are moved to the
+     * dead-letter queue, and if the transaction fails the messages are applied one by one, each in its own
+     * transaction, moving to the dead-letter queue only those that fail. Failures that may go away by themselves,
+     * like a database that cannot be reached, are instead thrown, and the batch is delivered again.
      *
-     * @param message the message containing the adoption post ID and adopter ID
+     * @param messages the messages containing the adoption post ID and adopter ID
      */
-    @RabbitListener(queues = "${app.rabbitmq.queue.chat-request-accepted}")
-    public void handleAcceptedRequest(RequestAcceptedMessageRabbitMQDto message) {
-        System.out.println("Ricevuto messaggio chat.request.accepted:" + message.getAdoptionPostId() + " " + message.getAdopterId());
+    @RabbitListener(queues = "${app.rabbitmq.queue.chat-request-accepted}",
+            containerFactory = "batchListenerContainerFactory")
+    public void handleAcceptedRequests(List<Message> messages) {
+        System.out.println("Ricevuti " + messages.size() + " messaggi chat.request.accepted");
+
+        List<Message> received = new ArrayList<>();
+        List<RequestAcceptedMessageRabbitMQDto> requests = new ArrayList<>();
+        for (Message message : messages) {
+            RequestAcceptedMessageRabbitMQDto request = read(message);
+            if (request == null) {
+                deadLetter(message, "messaggio non valido");
+            } else {
+                received.add(message);
+                requests.add(request);
+            }
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> acceptRequests(requests));
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                throw e;
+            }
+            System.out.println("Errore durante l'applicazione di " + requests.size()
+                    + " messaggi chat.request.accepted, applicati uno alla volta: " + e.getMessage());
+            for (int i = 0; i < requests.size(); i++) {
+                RequestAcceptedMessageRabbitMQDto request = requests.get(i);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> acceptRequests(List.of(request)));
+                } catch (RuntimeException single) {
+                    if (isTransient(single)) {
+                        throw single; // those already applied are conflicts when delivered again
+                    }
+                    deadLetter(received.get(i), single.getMessage());
+                }
+            }
+        }
+    }
 
-        AdoptionPost post = repository.findById(message.getAdoptionPostId()).orElse(null);
+    private void acceptRequests(List<RequestAcceptedMessageRabbitMQDto> requests) {
+        Map<Long, AdoptionPostIndexEntry> before = repository.findIndexEntriesByIds(
+                        requests.stream().map(RequestAcceptedMessageRabbitMQDto::getAdoptionPostId).toList())
+                .stream()
+                .collect(Collectors.toMap(AdoptionPostIndexEntry::id, Function.identity()));
 
-        System.out.println("Ricevuta richiesta accettata!!");
-        if(post != null) {
-            post.setAdopterId(message.getAdopterId());
-            post.setActive(false);
-            repository.save(post);
+        for (RequestAcceptedMessageRabbitMQDto request : requests) {
+            Long postId = request.getAdoptionPostId();
+            if (repository.markAdopted(postId, request.getAdopterId()) == 0) {
+                System.out.println("Conflitto: annuncio " + postId + " non trovato o già adottato, "
+                        + "richiesta accettata per " + request.getAdopterId() + " ignorata");
+                continue;
+            }
+            AdoptionPostIndexEntry entry = before.get(postId);
+            if (entry != null) {
+                postChangeService.postChanged(postId, entry, entry.withActive(false));
+            }
         }
     }
+
+    /**
+     * Reads an accepted request from a message.
+     *
+     * @return the request, or null if the message is not a request with both IDs
+     */
+    private RequestAcceptedMessageRabbitMQDto read(Message message) {
+        try {
+            RequestAcceptedMessageRabbitMQDto request =
+                    objectMapper.readValue(message.getBody(), RequestAcceptedMessageRabbitMQDto.class);
+            if (request == null || request.getAdoptionPostId() == null || request.getAdopterId() == null) {
+                return null;
+            }
+            return request;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void deadLetter(Message message, String reason) {
+        System.out.println("Messaggio chat.request.accepted scartato (" + reason + "): "
+                + new String(message.getBody(), StandardCharsets.UTF_8));
+        message.getMessageProperties().setHeader(FAILURE_HEADER, reason);
+        rabbitTemplate.send("", deadLetterQueue, message);
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException;
+    }
 }
@@ -0,0 +1,539 @@
+package org.example.adoptionpostservice.service;
+
+import org.example.adoptionpostservice.dto.AdoptionPostIndexEntry;
+import org.example.adoptionpostservice.dto.GeoPoint;
+import org.example.adoptionpostservice.repository.AdoptionPostRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the posts most similar to each post, for the "similar animals" section of the post page.
+ * Only posts of the same species are compared; the similarity of two posts adds up the weights of the matching
+ * breed and color, and of how close the ages and the locations are (see {@link #similarity}).
+ * <p>
+ * The nearest active posts of every post are computed in advance, so a request only reads a list.
+ * A post is compared with at most a fixed number of candidates of its species: those of the same breed,
+ * of the same location or nearby first, then any other. When a post is created or changed it is compared with
+ * its candidates, and takes the place of the farthest neighbor of those it is closer to; when a post is adopted
+ * or deleted it is removed from the lists of the posts that listed it, which get a new neighbor shortly after,
+ * a few at a time (see {@link #refillStale}), so a change never waits for many posts to be compared.
+ * The index is built when the application is ready, updated on every change
+ * (of this replica and of the others, see {@link PostChangeService}), and rebuilt from the database every
+ * now and then to correct any missed change.
+ * Until the first build completes, {@link #similar} returns empty and callers show no similar posts.
+ */
+@Component
+public class SimilarPostIndex {
+
+    // weights of the features compared; species must be equal
+    private static final double BREED_WEIGHT = 3;
+    private static final double AGE_WEIGHT = 2;
+    private static final double LOCATION_WEIGHT = 2;
+    private static final double COLOR_WEIGHT = 1;
+
+    // age difference (in months) and distance (in km) beyond which the ages and locations are not similar at all
+    private static final double AGE_SCALE_MONTHS = 24;
+    private static final double DISTANCE_SCALE_KM = 50;
+
+    // side of the grid cells locating the geocoded posts, so that posts within the distance scale are in
+    // the same or in the adjacent cells
+    private static final double CELL_DEGREES = DISTANCE_SCALE_KM / GeoPoint.KM_PER_DEGREE;
+
+    // posts that lost a neighbor refilled at each acquisition of the write lock
+    private static final int REFILL_BATCH = 100;
+
+    private final AdoptionPostRepository repository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int neighbors;
+
+    private final int candidates;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // fields below are guarded by lock
+    private IndexData data;
+    private boolean ready = false;
+    private List<Consumer<IndexData>> pendingChanges = null; // changes received while a rebuild is running
+
+    /**
+     * Constructor
+     *
+     * @param repository the adoption post repository
+     * @param transactionManager used to stream the posts inside a transaction
+     * @param neighbors number of similar posts kept for each post
+     * @param candidates maximum number of posts each post is compared with
+     */
+    public SimilarPostIndex(AdoptionPostRepository repository, PlatformTransactionManager transactionManager,
+                            @Value("${app.similar-posts.neighbors:20}") int neighbors,
+                            @Value("${app.similar-posts.candidates:500}") int candidates) {
+        this.repository = repository;
+        // read from the primary, like the search index: changes missed by a lagging replica would be lost
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.neighbors = neighbors;
+        this.candidates = candidates;
+        this.data = new IndexData(neighbors, candidates);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${app.similar-posts.rebuild-interval:PT1H}",
+            fixedDelayString = "${app.similar-posts.rebuild-interval:PT1H}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the whole index from the database and replaces the current one.
+     * Requests keep using the current index while the new one is built;
+     * changes received in the meantime are applied to both.
+     */
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        IndexData rebuilt = new IndexData(neighbors, candidates);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<AdoptionPostIndexEntry> entries = repository.streamIndexEntries()) {
+                    entries.forEach(rebuilt::put);
+                }
+            });
+        } catch (RuntimeException e) {
+            System.out.println("Errore durante la costruzione dell'indice degli annunci simili: " + e.getMessage());
+            lock.writeLock().lock();
+            try {
+                pendingChanges = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            pendingChanges.forEach(change -> change.accept(rebuilt));
+            pendingChanges = null;
+            data = rebuilt;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println(">>> Similar posts index built with " + rebuilt.entries.size() + " posts");
+    }
+
+    /**
+     * Recomputes the neighbors of the posts that lost one since the last refill.
+     * The write lock is released every few posts, so requests and changes are not held up meanwhile.
+     */
+    @Scheduled(fixedDelayString = "${app.similar-posts.refill-interval:PT5S}")
+    public void refillStale() {
+        boolean more = true;
+        while (more) {
+            lock.writeLock().lock();
+            try {
+                more = data.refillStale(REFILL_BATCH);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds a post to the index, or replaces it if already indexed.
+     *
+     * @param entry the searchable fields of the post
+     */
+    public void put(AdoptionPostIndexEntry entry) {
+        apply(index -> index.put(entry));
+    }
+
+    /**
+     * Removes a post from the index.
+     *
+     * @param postId post ID
+     */
+    public void remove(Long postId) {
+        apply(index -> index.remove(postId));
+    }
+
+    /**
+     * Returns the active posts most similar to a post, most similar first.
+     *
+     * @param postId post ID
+     * @param limit  maximum number of posts to return (at most the number of neighbors kept)
+     * @return the IDs of the similar posts, or empty if the post is not indexed or the index is not available
+     */
+    public Optional<List<Long>> similar(Long postId, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Neighbor> list = ready ? data.neighbors.get(postId) : null;
+            if (list == null) {
+                return Optional.empty();
+            }
+            return Optional.of(list.stream()
+                    .limit(limit)
+                    .map(Neighbor::id)
+                    .toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Computes how similar two posts of the same species are, from 0 to the sum of the weights.
+     * Locations are compared by distance when both posts are geocoded, by name otherwise.
+     *
+     * @param a a post
+     * @param b another post
+     * @return the similarity of the posts
+     */
+    static double similarity(AdoptionPostIndexEntry a, AdoptionPostIndexEntry b) {
+        double score = 0;
+        if (a.breed() != null && a.breed().equalsIgnoreCase(b.breed())) {
+            score += BREED_WEIGHT;
+        }
+        if (a.color() != null && a.color().equalsIgnoreCase(b.color())) {
+            score += COLOR_WEIGHT;
+        }
+        if (a.age() != null && b.age() != null) {
+            score += AGE_WEIGHT * Math.max(0, 1 - Math.abs(a.age() - b.age()) / AGE_SCALE_MONTHS);
+        }
+        if (a.latitude() != null && a.longitude() != null && b.latitude() != null && b.longitude() != null) {
+            score += LOCATION_WEIGHT * Math.max(0, 1 - distanceKm(a, b) / DISTANCE_SCALE_KM);
+        } else if (a.location() != null && a.location().equalsIgnoreCase(b.location())) {
+            score += LOCATION_WEIGHT;
+        }
+        return score;
+    }
+
+    /**
+     * Distance between two geocoded posts, approximated on a plane: within the distance scale the error
+     * is well below 1%, and the distances beyond it are not needed.
+     */
+    private static double distanceKm(AdoptionPostIndexEntry a, AdoptionPostIndexEntry b) {
+        double dLat = (b.latitude() - a.latitude()) * GeoPoint.KM_PER_DEGREE;
+        if (Math.abs(dLat) >= DISTANCE_SCALE_KM) {
+            return DISTANCE_SCALE_KM;
+        }
+        double dLon = (b.longitude() - a.longitude()) * GeoPoint.KM_PER_DEGREE
+                * Math.cos(Math.toRadians((a.latitude() + b.latitude()) / 2));
+        return Math.sqrt(dLat * dLat + dLon * dLon);
+    }
+
+    private void apply(Consumer<IndexData> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(data);
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A similar post.
+     *
+     * @param id              post ID
+     * @param score           similarity with the post whose neighbor it is
+     * @param publicationDate publication date of the post
+     */
+    private record Neighbor(long id, double score, LocalDateTime publicationDate) {
+
+        private static final Comparator<LocalDateTime> BY_DATE = Comparator.nullsFirst(Comparator.naturalOrder());
+
+        // most similar first, then newest first (IDs are not in publication order)
+        boolean before(Neighbor other) {
+            if (score != other.score) {
+                return score > other.score;
+            }
+            int byDate = BY_DATE.compare(publicationDate, other.publicationDate);
+            return byDate != 0 ? byDate > 0 : id > other.id;
+        }
+    }
+
+    /**
+     * Posts of a species, also grouped by breed, location and grid cell to find the candidates of a post.
+     */
+    private static final class SpeciesPosts {
+
+        private final Set<Long> all = new LinkedHashSet<>();
+
+        private final Map<String, Set<Long>> byBreed = new HashMap<>();
+
+        private final Map<String, Set<Long>> byLocation = new HashMap<>();
+
+        private final Map<Long, Set<Long>> byCell = new HashMap<>();
+
+        void add(AdoptionPostIndexEntry entry) {
+            all.add(entry.id());
+            if (entry.breed() != null) {
+                byBreed.computeIfAbsent(key(entry.breed()), k -> new HashSet<>()).add(entry.id());
+            }
+            if (entry.location() != null) {
+                byLocation.computeIfAbsent(key(entry.location()), k -> new HashSet<>()).add(entry.id());
+            }
+            if (entry.latitude() != null && entry.longitude() != null) {
+                byCell.computeIfAbsent(cell(entry.latitude(), entry.longitude()), k -> new HashSet<>())
+                        .add(entry.id());
+            }
+        }
+
+        void remove(AdoptionPostIndexEntry entry) {
+            all.remove(entry.id());
+            if (entry.breed() != null) {
+                removeFrom(byBreed, key(entry.breed()), entry.id());
+            }
+            if (entry.location() != null) {
+                removeFrom(byLocation, key(entry.location()), entry.id());
+            }
+            if (entry.latitude() != null && entry.longitude() != null) {
+                removeFrom(byCell, cell(entry.latitude(), entry.longitude()), entry.id());
+            }
+        }
+
+        boolean isEmpty() {
+            return all.isEmpty();
+        }
+
+        /**
+         * Returns the posts to compare with a post, at most limit: those of the same breed, then those of the
+         * same location or nearby, then the others.
+         */
+        Set<Long> candidates(AdoptionPostIndexEntry entry, int limit) {
+            Set<Long> candidates = new LinkedHashSet<>();
+            if (entry.breed() != null) {
+                addAll(candidates, byBreed.get(key(entry.breed())), entry.id(), limit);
+            }
+            if (entry.latitude() != null && entry.longitude() != null) {
+                long latitudeCell = (long) Math.floor(entry.latitude() / CELL_DEGREES);
+                long longitudeCell = (long) Math.floor(entry.longitude() / CELL_DEGREES);
+                // cells are narrower in km far from the equator
+                int longitudeCells = (int) Math.min(10,
+                        Math.ceil(1 / Math.max(0.1, Math.cos(Math.toRadians(entry.latitude())))));
+                for (long i = latitudeCell - 1; i <= latitudeCell + 1; i++) {
+                    for (long j = longitudeCell - longitudeCells; j <= longitudeCell + longitudeCells; j++) {
+                        addAll(candidates, byCell.get(cell(i, j)), entry.id(), limit);
+                    }
+                }
+            } else if (entry.location() != null) {
+                addAll(candidates, byLocation.get(key(entry.location())), entry.id(), limit);
+            }
+            addAll(candidates, all, entry.id(), limit);
+            return candidates;
+        }
+
+        private static void addAll(Set<Long> candidates, Set<Long> posts, Long excluded, int limit) {
+            if (posts == null) {
+                return;
+            }
+            for (Long postId : posts) {
+                if (candidates.size() >= limit) {
+                    return;
+                }
+                if (!postId.equals(excluded)) {
+                    candidates.add(postId);
+                }
+            }
+        }
+
+        private static <K> void removeFrom(Map<K, Set<Long>> groups, K key, Long postId) {
+            Set<Long> group = groups.get(key);
+            if (group != null) {
+                group.remove(postId);
+                if (group.isEmpty()) {
+                    groups.remove(key);
+                }
+            }
+        }
+
+        private static String key(String value) {
+            return value.toLowerCase(Locale.ROOT);
+        }
+
+        private static long cell(double latitude, double longitude) {
+            return cell((long) Math.floor(latitude / CELL_DEGREES), (long) Math.floor(longitude / CELL_DEGREES));
+        }
+
+        private static long cell(long latitudeCell, long longitudeCell) {
+            return (latitudeCell << 32) | (longitudeCell & 0xffffffffL);
+        }
+    }
+
+    /**
+     * Posts and their neighbors. Not thread safe: access is guarded by the enclosing index lock.
+     */
+    private static final class IndexData {
+
+        private final int size;
+
+        private final int candidates;
+
+        private final Map<Long, AdoptionPostIndexEntry> entries = new HashMap<>();
+
+        private final Map<String, SpeciesPosts> bySpecies = new HashMap<>();
+
+        // most similar active posts of each post, most similar first
+        private final Map<Long, List<Neighbor>> neighbors = new HashMap<>();
+
+        // posts listing each post among their neighbors
+        private final Map<Long, Set<Long>> listedBy = new HashMap<>();
+
+        // posts that lost a neighbor since they were last filled
+        private final Set<Long> stale = new LinkedHashSet<>();
+
+        IndexData(int size, int candidates) {
+            this.size = size;
+            this.candidates = candidates;
+        }
+
+        void put(AdoptionPostIndexEntry entry) {
+            AdoptionPostIndexEntry indexed = entry.withoutText();
+            if (indexed.equals(entries.get(entry.id()))) {
+                return; // only the text changed: same neighbors
+            }
+            remove(entry.id());
+            entries.put(entry.id(), indexed);
+            neighbors.put(entry.id(), new ArrayList<>());
+            if (indexed.species() == null) {
+                return;
+            }
+            SpeciesPosts sameSpecies = bySpecies.computeIfAbsent(indexed.species(), s -> new SpeciesPosts());
+            boolean active = Boolean.TRUE.equals(indexed.active());
+            for (Long otherId : sameSpecies.candidates(indexed, candidates)) {
+                AdoptionPostIndexEntry other = entries.get(otherId);
+                double score = similarity(indexed, other);
+                if (Boolean.TRUE.equals(other.active())) {
+                    offer(entry.id(), new Neighbor(otherId, score, other.publicationDate()));
+                }
+                if (active) {
+                    offer(otherId, new Neighbor(entry.id(), score, indexed.publicationDate()));
+                }
+            }
+            sameSpecies.add(indexed);
+        }
+
+        void remove(Long postId) {
+            AdoptionPostIndexEntry old = entries.remove(postId);
+            if (old == null) {
+                return;
+            }
+            if (old.species() != null) {
+                SpeciesPosts sameSpecies = bySpecies.get(old.species());
+                sameSpecies.remove(old);
+                if (sameSpecies.isEmpty()) {
+                    bySpecies.remove(old.species());
+                }
+            }
+            for (Neighbor neighbor : neighbors.remove(postId)) {
+                unlink(neighbor.id(), postId);
+            }
+            stale.remove(postId);
+            Set<Long> owners = listedBy.remove(postId);
+            if (owners != null) {
+                for (Long owner : owners) {
+                    neighbors.get(owner).removeIf(neighbor -> neighbor.id() == postId);
+                    stale.add(owner);
+                }
+            }
+        }
+
+        /**
+         * Refills the posts that lost a neighbor, at most limit of them.
+         *
+         * @return whether other posts are left to refill
+         */
+        boolean refillStale(int limit) {
+            Iterator<Long> iterator = stale.iterator();
+            for (int i = 0; i < limit && iterator.hasNext(); i++) {
+                Long ownerId = iterator.next();
+                iterator.remove();
+                refill(ownerId);
+            }
+            return !stale.isEmpty();
+        }
+
+        /**
+         * Adds a post to the neighbors of another, if it is closer than the farthest one.
+         */
+        private void offer(Long ownerId, Neighbor candidate) {
+            List<Neighbor> list = neighbors.get(ownerId);
+            if (list.size() == size && !candidate.before(list.get(size - 1))) {
+                return;
+            }
+            int position = 0;
+            while (position < list.size() && list.get(position).before(candidate)) {
+                position++;
+            }
+            for (int i = position; i < list.size(); i++) {
+                if (list.get(i).id() == candidate.id()) {
+                    return; // already listed, e.g. offered again by a refill
+                }
+            }
+            list.add(position, candidate);
+            listedBy.computeIfAbsent(candidate.id(), id -> new HashSet<>()).add(ownerId);
+            if (list.size() > size) {
+                unlink(list.remove(size).id(), ownerId);
+            }
+        }
+
+        /**
+         * Recomputes the neighbors of a post after one of them has been removed.
+         * The post is compared again with its candidates.
+         */
+        private void refill(Long ownerId) {
+            AdoptionPostIndexEntry owner = entries.get(ownerId);
+            SpeciesPosts sameSpecies = owner.species() != null ? bySpecies.get(owner.species()) : null;
+            if (sameSpecies == null) {
+                return;
+            }
+            for (Long otherId : sameSpecies.candidates(owner, candidates)) {
+                AdoptionPostIndexEntry other = entries.get(otherId);
+                if (Boolean.TRUE.equals(other.active())) {
+                    offer(ownerId, new Neighbor(otherId, similarity(owner, other), other.publicationDate()));
+                }
+            }
+        }
+
+        private void unlink(long neighborId, Long ownerId) {
+            Set<Long> owners = listedBy.get(neighborId);
+            if (owners != null) {
+                owners.remove(ownerId);
+                if (owners.isEmpty()) {
+                    listedBy.remove(neighborId);
+                }
+            }
+        }
+    }
+}
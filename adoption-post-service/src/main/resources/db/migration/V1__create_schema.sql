@@ -0,0 +1,57 @@
+-- Schema of the adoption posts as created by Hibernate before the migrations were introduced.
+-- Every statement is idempotent, so it also runs on databases baselined at version 0.
+
+create table if not exists adoption_posts (
+    id bigint generated by default as identity primary key,
+    name varchar(255),
+    description varchar(255),
+    publication_date timestamp(6),
+    species varchar(255),
+    breed varchar(255),
+    gender varchar(255),
+    age integer,
+    color varchar(255),
+    location varchar(255),
+    owner_id bigint,
+    active boolean,
+    adopter_id bigint,
+    image_base64 text
+);
+
+-- columns added since: "create table if not exists" leaves the table of a baselined database unchanged
+alter table adoption_posts add column if not exists latitude float(53);
+alter table adoption_posts add column if not exists longitude float(53);
+alter table adoption_posts add column if not exists image_key varchar(64);
+alter table adoption_posts add column if not exists image_placeholder varchar(2048);
+alter table adoption_posts add column if not exists version bigint default 0 not null;
+
+create table if not exists outbox_events (
+    id bigint generated by default as identity primary key,
+    routing_key varchar(255),
+    payload_type varchar(255),
+    payload text,
+    created_at timestamp(6),
+    sent_at timestamp(6)
+);
+
+create table if not exists post_changes (
+    seq bigint generated by default as identity primary key,
+    post_id bigint,
+    deleted boolean,
+    changed_at timestamp(6)
+);
+
+-- keyset pagination ordered by (publication_date, id)
+create index if not exists idx_adoption_posts_publication_date_id
+    on adoption_posts (publication_date desc, id desc);
+
+-- bounding box of radius searches run on the database
+create index if not exists idx_adoption_posts_latitude_longitude
+    on adoption_posts (latitude, longitude);
+
+-- the relay looking for the oldest unsent events, and the cleanup of the sent ones
+create index if not exists idx_outbox_events_sent_at_id
+    on outbox_events (sent_at, id);
+
+create index if not exists idx_post_changes_post_id
+    on post_changes (post_id);
@@ -0,0 +1,33 @@
+-- Indexes matched to the repository queries (see AdoptionPostSpecification and AdoptionPostRepository).
+-- Public searches almost always ask for active posts only, newest first: the partial indexes
+-- leave out adopted posts, which grow without bound and are never shown in searches.
+
+-- active posts ordered by publication date (home page and keyset pagination)
+create index idx_adoption_posts_active_publication_date_id
+    on adoption_posts (publication_date desc, id desc) where active;
+
+-- the most selective filters of a search, on active posts
+create index idx_adoption_posts_active_species_publication_date
+    on adoption_posts (species, publication_date desc, id desc) where active;
+
+create index idx_adoption_posts_active_breed
+    on adoption_posts (breed) where active;
+
+create index idx_adoption_posts_active_location
+    on adoption_posts (location) where active;
+
+-- posts of an owner ("my posts") and of an adopter ("my adoptions")
+create index idx_adoption_posts_owner_id_publication_date
+    on adoption_posts (owner_id, publication_date desc);
+
+create index idx_adoption_posts_adopter_id
+    on adoption_posts (adopter_id) where adopter_id is not null;
+
+-- posts still to geocode, looked up at startup
+create index idx_adoption_posts_not_geocoded
+    on adoption_posts (id) where latitude is null and location is not null;
+
+-- the compaction of the change feed looks for a later change of the same post
+drop index if exists idx_post_changes_post_id;
+create index idx_post_changes_post_id_seq
+    on post_changes (post_id, seq);
@@ -0,0 +1,12 @@
+-- The IDs of the adoption posts are generated by Hibernate from data_seq with pooled allocation:
+-- each call to the sequence reserves the 50 IDs ending at the returned value, so inserts can be batched.
+-- The sequence is created by init-db/init.sql with increment 1 and was never used.
+
+create sequence if not exists data_seq;
+
+alter sequence data_seq increment by 50;
+
+-- the first block starts after the IDs already assigned by the identity columns
+select setval('data_seq', greatest((select coalesce(max(id), 0) from adoption_posts), 50));
+
+alter table adoption_posts alter column id drop identity if exists;
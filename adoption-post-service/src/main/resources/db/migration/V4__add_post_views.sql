@@ -0,0 +1,6 @@
+-- Number of views of each post, kept out of adoption_posts so that counting views does not rewrite
+-- the post rows: the views are counted in memory and added here in batches (see PostViewCounter).
+create table post_views (
+    post_id bigint primary key references adoption_posts (id) on delete cascade,
+    views   bigint not null
+);
@@ -0,0 +1,23 @@
+-- The changes of the feed must be numbered in commit order, or a client that has read past a number could miss
+-- a change committed later with a lower one. A row gets a provisional number when inserted, and its final number
+-- right before its transaction commits, from a deferred trigger holding an advisory lock until the commit:
+-- writers wait for each other only while committing, not for the whole transaction.
+-- Provisional numbers are never seen by readers, since the rows are not visible before the commit.
+
+create function number_post_change() returns trigger
+    language plpgsql
+    set search_path from current -- the schema of the feed, set by Flyway
+as $$
+begin
+    perform pg_advisory_xact_lock(1);
+    update post_changes
+        set seq = nextval(pg_get_serial_sequence('post_changes', 'seq'))
+        where seq = new.seq;
+    return null;
+end
+$$;
+
+create constraint trigger number_post_change
+    after insert on post_changes
+    deferrable initially deferred
+    for each row execute function number_post_change();
@@ -0,0 +1,262 @@
+package org.example.adoptionpostservice;
+
+import org.example.adoptionpostservice.dto.AdoptionPostFacetsDto;
+import org.example.adoptionpostservice.dto.AdoptionPostIndexEntry;
+import org.example.adoptionpostservice.dto.GeoPoint;
+import org.example.adoptionpostservice.repository.AdoptionPostRepository;
+import org.example.adoptionpostservice.service.AdoptionPostIndex;
+import org.example.shareddtos.dto.AdoptionPostSearchDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that the search index returns the posts selected by {@link AdoptionPostIndex#matches},
+ * the specification of a search, on a set of generated posts, and that it stays consistent
+ * with it while posts are added, changed and removed.
+ */
+class AdoptionPostIndexTests {
+
+	private static final List<String> SPECIES = List.of("Cane", "Gatto", "Coniglio");
+
+	private static final List<String> BREEDS = List.of("Meticcio", "Labrador", "Siamese", "Europeo");
+
+	private static final List<String> COLORS = List.of("Nero", "Bianco", "Tigrato");
+
+	private static final List<String> LOCATIONS = List.of("Torino", "Milano", "Genova");
+
+	private static final List<String> NAMES = List.of("Micio", "Fido", "Luna", "Birba", "Tobia");
+
+	private static final List<String> DESCRIPTIONS = List.of(
+			"Un gatto dolce e tranquillo", "Cane giocherellone, ama correre", "Gattina timida con i bambini",
+			"Cuccioli vivaci cercano casa", "Vive in città, abituato al guinzaglio");
+
+	private final Random random = new Random(42);
+
+	private final Map<Long, AdoptionPostIndexEntry> posts = new LinkedHashMap<>();
+
+	private AdoptionPostIndex index;
+
+	@BeforeEach
+	void build() {
+		for (long id = 1; id <= 300; id++) {
+			posts.put(id, randomPost(id));
+		}
+		AdoptionPostRepository repository = mock(AdoptionPostRepository.class);
+		when(repository.streamIndexEntries()).thenReturn(new ArrayList<>(posts.values()).stream());
+		index = new AdoptionPostIndex(repository, mock(PlatformTransactionManager.class));
+		index.rebuild();
+	}
+
+	@Test
+	void searchesReturnThePostsMatchingTheFilters() {
+		for (AdoptionPostSearchDto filter : filters()) {
+			assertMatches(filter);
+		}
+	}
+
+	@Test
+	void facetCountsIgnoreTheFilterOnTheFacetItself() {
+		AdoptionPostSearchDto filter = search();
+		filter.setSpecies(List.of("Gatto"));
+		filter.setActiveOnly(true);
+
+		AdoptionPostFacetsDto facets = index.facetCounts(filter).orElseThrow();
+
+		assertThat(facets.getTotal()).isEqualTo(expected(filter).size());
+		AdoptionPostSearchDto anySpecies = search();
+		anySpecies.setActiveOnly(true);
+		Map<String, Long> bySpecies = expected(anySpecies).stream()
+				.collect(Collectors.groupingBy(id -> posts.get(id).species(), TreeMap::new, Collectors.counting()));
+		assertThat(new TreeMap<>(facets.getFacets().get(AdoptionPostIndex.SPECIES))).isEqualTo(bySpecies);
+	}
+
+	@Test
+	void changesKeepTheIndexConsistent() {
+		for (int i = 0; i < 500; i++) {
+			long id = 1 + random.nextInt(350);
+			switch (random.nextInt(4)) {
+				case 0 -> {
+					posts.remove(id);
+					index.remove(id);
+				}
+				case 1 -> {
+					AdoptionPostIndexEntry post = posts.get(id);
+					if (post != null) {
+						AdoptionPostIndexEntry adopted = post.withActive(false);
+						posts.put(id, adopted);
+						index.put(adopted);
+					}
+				}
+				default -> {
+					// a new post, or every field of an existing one changed
+					AdoptionPostIndexEntry post = randomPost(id);
+					posts.put(id, post);
+					index.put(post);
+				}
+			}
+		}
+
+		for (AdoptionPostSearchDto filter : filters()) {
+			assertMatches(filter);
+		}
+	}
+
+	@Test
+	void changeFailingDuringRebuildIsNotReplayed() {
+		AdoptionPostIndexEntry beyondRange = randomPost(Integer.MAX_VALUE + 1L);
+		AdoptionPostIndexEntry added = randomPost(301);
+		AdoptionPostRepository repository = mock(AdoptionPostRepository.class);
+		// changes received while the posts are read
+		when(repository.streamIndexEntries()).thenAnswer(invocation -> new ArrayList<>(posts.values()).stream()
+				.peek(post -> {
+					if (post.id() == 1) {
+						index.put(added);
+						index.put(beyondRange);
+					}
+				}));
+		index = new AdoptionPostIndex(repository, mock(PlatformTransactionManager.class));
+
+		index.rebuild();
+
+		// the rebuilt index would miss the post that could not be indexed: searches keep going to the database
+		assertThat(index.page(search(), 0, 10, false)).isEmpty();
+
+		when(repository.streamIndexEntries()).thenAnswer(invocation -> new ArrayList<>(posts.values()).stream());
+		posts.put(added.id(), added);
+		index.rebuild();
+
+		assertMatches(search());
+	}
+
+	private void assertMatches(AdoptionPostSearchDto filter) {
+		List<Long> expected = expected(filter);
+		AdoptionPostIndex.IndexPage page = index.page(filter, 0, posts.size(), false).orElseThrow();
+
+		assertThat(page.total()).as(describe(filter)).isEqualTo(expected.size());
+		if (filter.getQuery() != null) {
+			// ranked by relevance
+			assertThat(page.ids()).as(describe(filter)).containsExactlyInAnyOrderElementsOf(expected);
+		} else {
+			assertThat(page.ids()).as(describe(filter)).containsExactlyElementsOf(expected);
+		}
+
+		if (filter.getLatitude() != null) {
+			GeoPoint center = new GeoPoint(filter.getLatitude(), filter.getLongitude());
+			List<Long> nearest = index.page(filter, 0, 10, true).orElseThrow().ids();
+			assertThat(nearest).as(describe(filter)).isSortedAccordingTo(Comparator.comparingDouble(
+					(Long id) -> new GeoPoint(posts.get(id).latitude(), posts.get(id).longitude()).distanceKm(center)));
+			assertThat(new HashSet<>(expected)).containsAll(nearest);
+		}
+	}
+
+	/**
+	 * Posts matching a search, newest first.
+	 */
+	private List<Long> expected(AdoptionPostSearchDto filter) {
+		return posts.values().stream()
+				.filter(post -> AdoptionPostIndex.matches(filter, post))
+				.sorted(Comparator.comparing(AdoptionPostIndexEntry::publicationDate)
+						.thenComparing(AdoptionPostIndexEntry::id)
+						.reversed())
+				.map(AdoptionPostIndexEntry::id)
+				.toList();
+	}
+
+	private List<AdoptionPostSearchDto> filters() {
+		List<AdoptionPostSearchDto> filters = new ArrayList<>();
+		filters.add(search());
+
+		AdoptionPostSearchDto species = search();
+		species.setSpecies(List.of("Gatto"));
+		filters.add(species);
+
+		AdoptionPostSearchDto breeds = search();
+		breeds.setSpecies(List.of("Cane", "Coniglio"));
+		breeds.setBreed(List.of("Meticcio", "Labrador"));
+		breeds.setGender("Femmina");
+		filters.add(breeds);
+
+		AdoptionPostSearchDto ages = search();
+		ages.setMinAge(12);
+		ages.setMaxAge(60);
+		ages.setColor(List.of("Nero"));
+		ages.setActiveOnly(true);
+		filters.add(ages);
+
+		AdoptionPostSearchDto locations = search();
+		locations.setLocation(List.of("Torino", "Genova"));
+		locations.setActiveOnly(true);
+		filters.add(locations);
+
+		AdoptionPostSearchDto text = search();
+		text.setQuery("gatti timidi");
+		filters.add(text);
+
+		AdoptionPostSearchDto textAndSpecies = search();
+		textAndSpecies.setQuery("cane");
+		textAndSpecies.setSpecies(List.of("Cane"));
+		textAndSpecies.setActiveOnly(true);
+		filters.add(textAndSpecies);
+
+		AdoptionPostSearchDto radius = search();
+		radius.setLatitude(45.07);
+		radius.setLongitude(7.69);
+		radius.setRadiusKm(60.0);
+		filters.add(radius);
+
+		AdoptionPostSearchDto radiusAndSpecies = search();
+		radiusAndSpecies.setLatitude(44.41);
+		radiusAndSpecies.setLongitude(8.93);
+		radiusAndSpecies.setRadiusKm(120.0);
+		radiusAndSpecies.setSpecies(List.of("Cane"));
+		filters.add(radiusAndSpecies);
+
+		AdoptionPostSearchDto nothing = search();
+		nothing.setSpecies(List.of("Criceto"));
+		filters.add(nothing);
+		return filters;
+	}
+
+	private static AdoptionPostSearchDto search() {
+		return new AdoptionPostSearchDto();
+	}
+
+	private AdoptionPostIndexEntry randomPost(long id) {
+		boolean geocoded = random.nextInt(10) != 0;
+		return new AdoptionPostIndexEntry(id, pick(SPECIES), pick(BREEDS),
+				random.nextBoolean() ? "Maschio" : "Femmina", random.nextInt(120), pick(COLORS), pick(LOCATIONS),
+				random.nextInt(5) != 0,
+				// not in ID order, like imported posts and IDs allocated in blocks by each replica
+				LocalDateTime.of(2025, 1, 1, 0, 0).plusHours(random.nextInt(5000)),
+				geocoded ? 44 + random.nextDouble() * 2 : null, geocoded ? 7 + random.nextDouble() * 2 : null,
+				pick(NAMES), pick(DESCRIPTIONS));
+	}
+
+	private <T> T pick(List<T> values) {
+		return values.get(random.nextInt(values.size()));
+	}
+
+	private static String describe(AdoptionPostSearchDto filter) {
+		return "species=" + filter.getSpecies() + " breed=" + filter.getBreed() + " gender=" + filter.getGender()
+				+ " age=" + filter.getMinAge() + "-" + filter.getMaxAge() + " color=" + filter.getColor()
+				+ " location=" + filter.getLocation() + " activeOnly=" + filter.getActiveOnly()
+				+ " query=" + filter.getQuery() + " center=" + filter.getLatitude() + "," + filter.getLongitude()
+				+ " radiusKm=" + filter.getRadiusKm();
+	}
+}
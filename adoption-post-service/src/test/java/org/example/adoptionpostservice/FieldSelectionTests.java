@@ -0,0 +1,31 @@
+package org.example.adoptionpostservice;
+
+import org.example.adoptionpostservice.service.FieldSelection;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FieldSelectionTests {
+
+	@Test
+	void noFieldsSelectsAll() {
+		assertThat(FieldSelection.parse(null, FieldSelection.SUMMARY_FIELDS)).isNull();
+		assertThat(FieldSelection.parse(" ", FieldSelection.SUMMARY_FIELDS)).isNull();
+	}
+
+	@Test
+	void selectionIncludesId() {
+		assertThat(FieldSelection.parse("species, name,,", FieldSelection.SUMMARY_FIELDS))
+				.containsExactly("id", "name", "species");
+	}
+
+	@Test
+	void unknownFieldIsRejected() {
+		assertThatThrownBy(() -> FieldSelection.parse("name,ownerId", FieldSelection.SUMMARY_FIELDS))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("ownerId");
+		assertThat(FieldSelection.parse("name,ownerId", FieldSelection.DETAIL_FIELDS))
+				.containsExactly("id", "name", "ownerId");
+	}
+}
@@ -0,0 +1,104 @@
+package org.example.adoptionpostservice;
+
+import jakarta.persistence.EntityManager;
+import org.example.adoptionpostservice.model.AdoptionPost;
+import org.example.adoptionpostservice.repository.AdoptionPostRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the time needed to create many posts one at a time, as Hibernate did with IDENTITY IDs
+ * (one insert returning the generated ID per post), and with the pooled sequence, which lets Hibernate
+ * send them in JDBC batches (rewritten as multi-row inserts by the driver).
+ * Skipped unless run with -Dbenchmark=true (and Docker available), e.g.
+ * mvn test -Dtest=InsertBatchingBenchmark -Dbenchmark=true
+ */
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class InsertBatchingBenchmark {
+
+	private static final int POSTS = 2_000;
+
+	private static final int ROUNDS = 5;
+
+	private static final String INSERT_RETURNING_ID = "insert into schema_adoption_posts.adoption_posts "
+			+ "(id, name, description, publication_date, species, breed, gender, age, color, location, "
+			+ "owner_id, active, version) "
+			+ "values (nextval('schema_adoption_posts.data_seq'), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, true, 0) returning id";
+
+	private static final String[] SPECIES = {"Cane", "Gatto", "Coniglio"};
+
+	@Container
+	@ServiceConnection
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17-alpine");
+
+	@Autowired
+	private AdoptionPostRepository repository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Test
+	void comparePostInserts() {
+		System.out.printf("%-28s %12s %14s%n", "inserimento", "ms", "annunci/s");
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (AdoptionPost post : posts()) {
+				jdbcTemplate.queryForObject(INSERT_RETURNING_ID, Long.class, post.getName(), post.getDescription(),
+						post.getPublicationDate(), post.getSpecies(), post.getBreed(), post.getGender(),
+						post.getAge(), post.getColor(), post.getLocation(), post.getOwnerId());
+			}
+			print("uno alla volta (IDENTITY)", System.nanoTime() - start);
+
+			List<AdoptionPost> posts = posts();
+			start = System.nanoTime();
+			repository.saveAll(posts);
+			entityManager.flush();
+			print("batch (sequenza pooled)", System.nanoTime() - start);
+			entityManager.clear();
+		}
+	}
+
+	private static List<AdoptionPost> posts() {
+		List<AdoptionPost> posts = new ArrayList<>(POSTS);
+		LocalDateTime now = LocalDateTime.now();
+		for (int i = 0; i < POSTS; i++) {
+			posts.add(AdoptionPost.builder()
+					.name("Animale " + i)
+					.description("Molto socievole, vaccinato e microchippato.")
+					.publicationDate(now.minusMinutes(i))
+					.species(SPECIES[i % SPECIES.length])
+					.breed("Meticcio")
+					.gender(i % 2 == 0 ? "Maschio" : "Femmina")
+					.age(6 + i % 120)
+					.color("Marrone")
+					.location("Torino")
+					.ownerId(1L + i % 50)
+					.active(true)
+					.build());
+		}
+		return posts;
+	}
+
+	private static void print(String name, long nanos) {
+		double millis = nanos / 1_000_000.0;
+		System.out.printf("%-28s %12.1f %14.0f%n", name, millis, POSTS / (millis / 1_000));
+	}
+}
@@ -0,0 +1,40 @@
+package org.example.adoptionpostservice;
+
+import org.example.adoptionpostservice.service.ItalianAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItalianAnalyzerTests {
+
+	@Test
+	void inflectionsHaveTheSameStem() {
+		assertThat(ItalianAnalyzer.analyze("gatto gatta gatti gatte")).containsOnly("gatt");
+		assertThat(ItalianAnalyzer.analyze("micio micia")).containsOnly("mic");
+		assertThat(ItalianAnalyzer.analyze("gioco giochi")).containsOnly("gioc");
+	}
+
+	@Test
+	void shortWordsAreNotStemmed() {
+		assertThat(ItalianAnalyzer.analyze("cane ama")).containsExactly("can", "ama");
+	}
+
+	@Test
+	void textIsLowercasedWithoutAccentsAndPunctuation() {
+		assertThat(ItalianAnalyzer.analyze("Città, GATTO!")).containsExactly("citt", "gatt");
+		assertThat(ItalianAnalyzer.analyze("gatto-cane")).containsExactly("gatt", "can");
+	}
+
+	@Test
+	void stopwordsAreDropped() {
+		assertThat(ItalianAnalyzer.analyze("il gatto e il cane con i bambini"))
+				.containsExactly("gatt", "can", "bambin");
+	}
+
+	@Test
+	void emptyTextHasNoTerms() {
+		assertThat(ItalianAnalyzer.analyze(null)).isEmpty();
+		assertThat(ItalianAnalyzer.analyze("  ")).isEmpty();
+		assertThat(ItalianAnalyzer.analyze("... !")).isEmpty();
+	}
+}
@@ -0,0 +1,62 @@
+package org.example.adoptionpostservice;
+
+import org.example.adoptionpostservice.service.PostViewCounter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+
+/**
+ * Measures how many views per second can be counted by concurrent requests, with PostViewCounter
+ * and with a map of totals updated in place (ConcurrentHashMap.merge), on a few popular posts
+ * (most views go to the posts on the home page).
+ * Skipped unless run with -Dbenchmark=true, e.g.
+ * mvn test -Dtest=PostViewCounterBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PostViewCounterBenchmark {
+
+	private static final int POSTS = 20;
+
+	private static final int VIEWS_PER_THREAD = 2_000_000;
+
+	private static final int ROUNDS = 5;
+
+	@Test
+	void compareCounters() throws Exception {
+		int threads = Runtime.getRuntime().availableProcessors();
+		System.out.printf("%-26s %8s %16s%n", "contatore", "thread", "visualizzazioni/s");
+		for (int round = 0; round < ROUNDS; round++) {
+			PostViewCounter counter = new PostViewCounter(null, "schema_adoption_posts", 1_000, Duration.ofMinutes(1));
+			run("PostViewCounter", threads, postId -> counter.recordView(postId));
+
+			Map<Long, Long> totals = new ConcurrentHashMap<>();
+			run("ConcurrentHashMap.merge", threads, postId -> totals.merge(postId, 1L, Long::sum));
+		}
+	}
+
+	private static void run(String name, int threads, LongConsumer recordView) throws InterruptedException {
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			workers.add(new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = 0; i < VIEWS_PER_THREAD; i++) {
+					recordView.accept(random.nextLong(POSTS));
+				}
+			}));
+		}
+		long start = System.nanoTime();
+		workers.forEach(Thread::start);
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+		System.out.printf("%-26s %8d %16.0f%n", name, threads, (double) threads * VIEWS_PER_THREAD / seconds);
+	}
+}
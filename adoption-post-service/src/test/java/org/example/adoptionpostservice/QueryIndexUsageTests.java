@@ -0,0 +1,258 @@
+package org.example.adoptionpostservice;
+
+import org.example.adoptionpostservice.dto.SearchCursor;
+import org.example.adoptionpostservice.repository.AdoptionPostRepository;
+import org.example.adoptionpostservice.repository.AdoptionPostSpecification;
+import org.example.adoptionpostservice.repository.OutboxEventRepository;
+import org.example.adoptionpostservice.repository.PostChangeRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the repository queries are served by the indexes created by the migrations.
+ * Each repository method is run on a schema filled with generated posts and analyzed (on empty tables the
+ * planner cannot tell a primary key lookup from a scan of a small partial index), and the SQL it executes is
+ * explained (generic plan, sequential scans disabled): the plan must not scan a table and must use the
+ * expected index.
+ * Methods that read whole tables by design (index stream, export, change feed compaction) are not checked.
+ * Skipped when Docker is not available.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+		+ "org.example.adoptionpostservice.QueryIndexUsageTests$RecordingInspector")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class QueryIndexUsageTests {
+
+	private static final Pattern UNTYPED_PARAMETER = Pattern.compile("could not determine data type of parameter \\$(\\d+)");
+
+	@Container
+	@ServiceConnection
+	static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17-alpine");
+
+	/**
+	 * Records the SQL executed by Hibernate.
+	 */
+	public static class RecordingInspector implements StatementInspector {
+
+		static final List<String> statements = new CopyOnWriteArrayList<>();
+
+		@Override
+		public String inspect(String sql) {
+			statements.add(sql);
+			return sql;
+		}
+	}
+
+	@Autowired
+	private AdoptionPostRepository postRepository;
+
+	@Autowired
+	private OutboxEventRepository outboxRepository;
+
+	@Autowired
+	private PostChangeRepository changeRepository;
+
+	@Autowired
+	private DataSource dataSource;
+
+	private static boolean populated = false;
+
+	@BeforeEach
+	void populate() throws Exception {
+		if (populated) {
+			return;
+		}
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			// a fifth of the posts adopted, a tenth not geocoded
+			statement.execute("""
+					insert into schema_adoption_posts.adoption_posts (id, name, description, publication_date, species, breed, gender, age,
+					    color, location, latitude, longitude, owner_id, active, adopter_id, version)
+					select i, 'Annuncio ' || i, 'Descrizione', timestamp '2024-01-01' + i * interval '1 hour',
+					    case when i % 100 = 1 then 'Cane' else 'Specie ' || i % 100 end, 'Razza ' || i % 200,
+					    case when i % 2 = 0 then 'Maschio' else 'Femmina' end, i % 180, 'Colore ' || i % 12,
+					    'Citta ' || i % 100, case when i % 10 <> 0 then 45 + i % 1000 / 1000.0 end,
+					    case when i % 10 <> 0 then 7 + i % 1000 / 1000.0 end, 1 + i % 2000, i % 5 <> 0,
+					    case when i % 5 = 0 then 1 + i % 3000 end, 0
+					from generate_series(1, 20000) i
+					""");
+			statement.execute("analyze schema_adoption_posts.adoption_posts");
+		}
+		populated = true;
+	}
+
+	@Test
+	void postsOfOwnerUseOwnerIndex() throws Exception {
+		assertUsesIndex("idx_adoption_posts_owner_id_publication_date", () -> postRepository.findSummaries(
+				AdoptionPostSpecification.ownedBy(1L),
+				PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "publicationDate"))));
+	}
+
+	@Test
+	void postsOfAdopterUseAdopterIndex() throws Exception {
+		assertUsesIndex("idx_adoption_posts_adopter_id", () -> postRepository.findSummaries(
+				AdoptionPostSpecification.adoptedBy(1L), PageRequest.of(0, 20)));
+	}
+
+	@Test
+	void activePostsUsePartialIndex() throws Exception {
+		assertUsesIndex("idx_adoption_posts_active_publication_date_id", () -> postRepository.findSummariesAfter(
+				AdoptionPostSpecification.withFilters(null, null, null, null, null, null, null, true), null, 20));
+	}
+
+	@Test
+	void activePostsOfSpeciesUseSpeciesIndex() throws Exception {
+		assertUsesIndex("idx_adoption_posts_active_species_publication_date", () -> postRepository.findSummariesAfter(
+				AdoptionPostSpecification.withFilters(List.of("Cane"), null, null, null, null, null, null, true),
+				null, 20));
+	}
+
+	@Test
+	void nextSlicesStartAtCursorInIndex() throws Exception {
+		// the index scan must start at the cursor, not skip the newer posts one by one
+		SearchCursor cursor = new SearchCursor(LocalDateTime.of(2025, 6, 1, 0, 0), 12000L);
+		assertUsesIndex("idx_adoption_posts_active_publication_date_id", "publication_date <=",
+				() -> postRepository.findSummariesAfter(
+						AdoptionPostSpecification.withFilters(null, null, null, null, null, null, null, true),
+						cursor, 20));
+		assertUsesIndex("idx_adoption_posts_active_species_publication_date", "publication_date <=",
+				() -> postRepository.findSummariesAfter(
+						AdoptionPostSpecification.withFilters(List.of("Cane"), null, null, null, null, null, null, true),
+						cursor, 20));
+	}
+
+	@Test
+	void postsByIdsUsePrimaryKey() throws Exception {
+		assertUsesIndex("adoption_posts_pkey", () -> postRepository.findSummariesByIds(List.of(1L, 2L)));
+		assertUsesIndex("adoption_posts_pkey", () -> postRepository.findIndexEntriesByIds(List.of(1L, 2L)));
+		assertUsesIndex("adoption_posts_pkey", () -> postRepository.markAdopted(1L, 2L));
+	}
+
+	@Test
+	void postsToGeocodeUsePartialIndex() throws Exception {
+		assertUsesIndex("idx_adoption_posts_not_geocoded",
+				() -> postRepository.findByLatitudeIsNullAndLocationIsNotNull());
+	}
+
+	@Test
+	void outboxQueriesUseSentAtIndex() throws Exception {
+		assertUsesIndex("idx_outbox_events_sent_at_id",
+				() -> outboxRepository.deleteSentBefore(LocalDateTime.now()));
+		assertUsesIndex(null, () -> outboxRepository.lockUnsent(PageRequest.of(0, 100)));
+	}
+
+	@Test
+	void changeFeedUsesPrimaryKey() throws Exception {
+		assertUsesIndex("post_changes_pkey", () -> changeRepository.findAfter(0L, PageRequest.of(0, 100)));
+	}
+
+	/**
+	 * Runs a repository call and checks the plans of the statements it executes.
+	 *
+	 * @param index index that every statement must use, or null to only forbid sequential scans
+	 * @param call  the repository call
+	 */
+	private void assertUsesIndex(String index, Runnable call) throws Exception {
+		assertUsesIndex(index, null, call);
+	}
+
+	/**
+	 * Runs a repository call and checks the plans of the statements it executes.
+	 *
+	 * @param index     index that every statement must use, or null to only forbid sequential scans
+	 * @param condition text of a condition that the index scan must apply, or null
+	 * @param call      the repository call
+	 */
+	private void assertUsesIndex(String index, String condition, Runnable call) throws Exception {
+		RecordingInspector.statements.clear();
+		call.run();
+		assertThat(RecordingInspector.statements).isNotEmpty();
+		for (String sql : RecordingInspector.statements) {
+			String plan = explain(sql);
+			assertThat(plan).as(sql).doesNotContain("Seq Scan");
+			if (index != null) {
+				assertThat(plan).as(sql).contains(index);
+			}
+			if (condition != null) {
+				assertThat(plan.lines().filter(line -> line.contains("Index Cond:")))
+						.as(plan).anyMatch(line -> line.contains(condition));
+			}
+		}
+	}
+
+	private String explain(String sql) throws Exception {
+		// the statement is prepared with $n parameters and explained with a generic plan, which does not
+		// depend on the values (explain (generic_plan) cannot be sent by the driver, which would bind them)
+		StringBuilder numbered = new StringBuilder();
+		int parameter = 0;
+		for (char c : sql.toCharArray()) {
+			if (c == '?') {
+				numbered.append('$').append(++parameter);
+			} else {
+				numbered.append(c);
+			}
+		}
+		StringBuilder plan = new StringBuilder();
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute("set enable_seqscan = off");
+			statement.execute("set plan_cache_mode = force_generic_plan");
+			prepare(statement, numbered.toString(), parameter);
+			String arguments = parameter > 0 ? "(" + String.join(", ", Collections.nCopies(parameter, "null")) + ")" : "";
+			try (ResultSet rows = statement.executeQuery("explain execute explained" + arguments)) {
+				while (rows.next()) {
+					plan.append(rows.getString(1)).append('\n');
+				}
+			}
+			statement.execute("deallocate explained");
+			statement.execute("reset plan_cache_mode");
+			statement.execute("reset enable_seqscan");
+		}
+		return plan.toString();
+	}
+
+	/**
+	 * Prepares a statement as "explained". Parameters whose type the server cannot infer (such as in
+	 * "? is null") are declared as text, which is how the driver binds strings.
+	 */
+	private static void prepare(Statement statement, String sql, int parameters) throws SQLException {
+		String[] types = new String[parameters];
+		Arrays.fill(types, "unknown");
+		while (true) {
+			try {
+				statement.execute("prepare explained" + (parameters > 0 ? "(" + String.join(", ", types) + ")" : "")
+						+ " as " + sql);
+				return;
+			} catch (SQLException e) {
+				Matcher untyped = UNTYPED_PARAMETER.matcher(String.valueOf(e.getMessage()));
+				if (!untyped.find() || !types[Integer.parseInt(untyped.group(1)) - 1].equals("unknown")) {
+					throw e;
+				}
+				types[Integer.parseInt(untyped.group(1)) - 1] = "text";
+			}
+		}
+	}
+}
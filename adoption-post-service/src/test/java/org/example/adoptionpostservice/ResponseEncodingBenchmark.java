@@ -0,0 +1,110 @@
+package org.example.adoptionpostservice;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.example.adoptionpostservice.config.JacksonConfig;
+import org.example.adoptionpostservice.dto.AdoptionPostDetailDto;
+import org.example.shareddtos.dto.AdoptionPostSummaryDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares payload size and serialization/parsing time of the response encodings (JSON, CBOR, Smile)
+ * on pages shaped like the ones served by the search and detail endpoints.
+ * Skipped unless run with -Dbenchmark=true, e.g.
+ * mvn test -Dtest=ResponseEncodingBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ResponseEncodingBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 2_000;
+
+	private static final int ITERATIONS = 5_000;
+
+	private static final String[] SPECIES = {"Cane", "Gatto", "Coniglio"};
+
+	private static final String[] LOCATIONS = {"Torino", "Moncalieri", "Collegno", "Rivoli", "Chieri"};
+
+	@Test
+	void compareEncodings() throws Exception {
+		Map<String, JsonFactory> formats = Map.of(
+				"json", new JsonFactory(),
+				"cbor", new CBORFactory(),
+				"smile", new SmileFactory());
+		Object searchPage = new PageImpl<>(summaries(20), PageRequest.of(0, 20), 1_234);
+		Object largeSearchPage = new PageImpl<>(summaries(100), PageRequest.of(0, 100), 1_234);
+		Object details = details(20);
+
+		System.out.printf("%-8s %-20s %10s %14s %14s%n", "formato", "pagina", "byte", "scrittura us", "lettura us");
+		for (String format : List.of("json", "cbor", "smile")) {
+			ObjectMapper mapper = mapper(formats.get(format));
+			run(mapper, format, "ricerca (20)", searchPage);
+			run(mapper, format, "ricerca (100)", largeSearchPage);
+			run(mapper, format, "dettagli (20)", details);
+		}
+	}
+
+	// same configuration as the application mappers (Spring Boot defaults and JacksonConfig)
+	private static ObjectMapper mapper(JsonFactory factory) {
+		Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder().factory(factory)
+				.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+		new JacksonConfig().fieldSelectionCustomizer().customize(builder);
+		return builder.build();
+	}
+
+	private static void run(ObjectMapper mapper, String format, String name, Object page) throws Exception {
+		byte[] bytes = mapper.writeValueAsBytes(page);
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			mapper.writeValueAsBytes(page);
+			mapper.readTree(bytes);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			mapper.writeValueAsBytes(page);
+		}
+		double writeMicros = (System.nanoTime() - start) / 1_000.0 / ITERATIONS;
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			mapper.readTree(bytes);
+		}
+		double readMicros = (System.nanoTime() - start) / 1_000.0 / ITERATIONS;
+		System.out.printf("%-8s %-20s %10d %14.1f %14.1f%n", format, name, bytes.length, writeMicros, readMicros);
+	}
+
+	private static List<AdoptionPostSummaryDto> summaries(int count) {
+		List<AdoptionPostSummaryDto> summaries = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			summaries.add(new AdoptionPostSummaryDto((long) 10_000 + i, "Animale " + i,
+					LocalDateTime.of(2025, 5, 1, 10, 0).plusHours(i), SPECIES[i % SPECIES.length], "Meticcio",
+					6 + i % 120, i % 2 == 0 ? "Maschio" : "Femmina", "Marrone",
+					LOCATIONS[i % LOCATIONS.length], 0.5 + i * 1.7, true,
+					"posts/" + (10_000 + i) + ".jpg", "data:image/webp;base64,UklGRkAAAABXRUJQVlA4IDQAAADQAQCdASoQAAwAPm0qkUWkIqGYBABABsSgCdAYkCvAA+AA/vwAAAA=",
+					null));
+		}
+		return summaries;
+	}
+
+	private static List<AdoptionPostDetailDto> details(int count) {
+		List<AdoptionPostDetailDto> details = new ArrayList<>();
+		for (AdoptionPostSummaryDto summary : summaries(count)) {
+			details.add(new AdoptionPostDetailDto(summary.getId(), summary.getName(),
+					"Molto socievole, abituato a vivere con altri animali e con bambini. Vaccinato e microchippato. "
+							+ "Cerca una famiglia con un giardino e tanto tempo per le passeggiate.",
+					summary.getPublicationDate(), summary.getSpecies(), summary.getBreed(), summary.getGender(),
+					summary.getAge(), summary.getColor(), summary.getLocation(), 42L, true, null,
+					summary.getImageKey(), summary.getImagePlaceholder(), 3L, 125L));
+		}
+		return details;
+	}
+}
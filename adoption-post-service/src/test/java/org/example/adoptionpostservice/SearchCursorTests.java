@@ -0,0 +1,38 @@
+package org.example.adoptionpostservice;
+
+import org.example.adoptionpostservice.dto.SearchCursor;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchCursorTests {
+
+	@Test
+	void decodesEncodedCursor() {
+		SearchCursor cursor = new SearchCursor(LocalDateTime.of(2025, 3, 14, 15, 9, 26, 535_000_000), 42L);
+
+		String encoded = cursor.encode();
+
+		assertThat(encoded).doesNotContain("+", "/", "=");
+		assertThat(SearchCursor.decode(encoded)).isEqualTo(cursor);
+	}
+
+	@Test
+	void malformedCursorIsRejected() {
+		for (String cursor : new String[] {"", "%%%", encode("2025-03-14T15:09"), encode("ieri|42"),
+				encode("2025-03-14T15:09|quarantadue"), encode("2025-03-14T15:09|")}) {
+			assertThatThrownBy(() -> SearchCursor.decode(cursor))
+					.as(cursor)
+					.isInstanceOf(IllegalArgumentException.class);
+		}
+	}
+
+	private static String encode(String raw) {
+		return Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+}
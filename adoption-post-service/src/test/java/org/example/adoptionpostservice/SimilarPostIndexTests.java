@@ -0,0 +1,119 @@
+package org.example.adoptionpostservice;
+
+import org.example.adoptionpostservice.dto.AdoptionPostIndexEntry;
+import org.example.adoptionpostservice.repository.AdoptionPostRepository;
+import org.example.adoptionpostservice.service.SimilarPostIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that the similar posts index keeps the neighbors of every post equal to those of an index
+ * built from scratch, when neighbors are adopted or deleted and the posts that lost them are refilled.
+ */
+class SimilarPostIndexTests {
+
+	private static final int NEIGHBORS = 5;
+
+	private final Random random = new Random(7);
+
+	private final Map<Long, AdoptionPostIndexEntry> posts = new LinkedHashMap<>();
+
+	private SimilarPostIndex index;
+
+	@BeforeEach
+	void build() {
+		for (long id = 1; id <= 200; id++) {
+			posts.put(id, randomPost(id));
+		}
+		index = build(posts);
+	}
+
+	@Test
+	void adoptedNeighborIsReplacedAfterRefill() {
+		Long postId = 1L;
+		List<Long> before = index.similar(postId, NEIGHBORS).orElseThrow();
+		assertThat(before).hasSize(NEIGHBORS);
+		Long adoptedId = before.get(0);
+
+		adopt(adoptedId);
+
+		assertThat(index.similar(postId, NEIGHBORS).orElseThrow())
+				.doesNotContain(adoptedId)
+				.hasSize(NEIGHBORS - 1);
+
+		index.refillStale();
+
+		assertThat(index.similar(postId, NEIGHBORS).orElseThrow())
+				.doesNotContain(adoptedId)
+				.hasSize(NEIGHBORS)
+				.isEqualTo(build(posts).similar(postId, NEIGHBORS).orElseThrow());
+	}
+
+	@Test
+	void refilledNeighborsEqualThoseOfARebuild() {
+		for (int i = 0; i < 100; i++) {
+			long id = 1 + random.nextInt(220);
+			switch (random.nextInt(3)) {
+				case 0 -> adopt(id);
+				case 1 -> {
+					posts.remove(id);
+					index.remove(id);
+				}
+				default -> {
+					AdoptionPostIndexEntry post = randomPost(id);
+					posts.put(id, post);
+					index.put(post);
+				}
+			}
+		}
+		index.refillStale();
+
+		SimilarPostIndex rebuilt = build(posts);
+		for (Long id : posts.keySet()) {
+			assertThat(index.similar(id, NEIGHBORS)).as("post " + id).isEqualTo(rebuilt.similar(id, NEIGHBORS));
+		}
+		assertThat(index.similar(999L, NEIGHBORS)).isEmpty();
+	}
+
+	private void adopt(Long id) {
+		AdoptionPostIndexEntry post = posts.get(id);
+		if (post != null) {
+			posts.put(id, post.withActive(false));
+			index.put(post.withActive(false));
+		}
+	}
+
+	/**
+	 * Builds an index comparing every post with all the others of its species.
+	 */
+	private static SimilarPostIndex build(Map<Long, AdoptionPostIndexEntry> posts) {
+		AdoptionPostRepository repository = mock(AdoptionPostRepository.class);
+		when(repository.streamIndexEntries()).thenReturn(new ArrayList<>(posts.values()).stream());
+		SimilarPostIndex index = new SimilarPostIndex(repository, mock(PlatformTransactionManager.class),
+				NEIGHBORS, posts.size());
+		index.rebuild();
+		return index;
+	}
+
+	private AdoptionPostIndexEntry randomPost(long id) {
+		boolean geocoded = random.nextInt(4) != 0;
+		return new AdoptionPostIndexEntry(id, random.nextBoolean() ? "Cane" : "Gatto",
+				List.of("Meticcio", "Labrador", "Europeo").get(random.nextInt(3)), "Femmina", random.nextInt(100),
+				List.of("Nero", "Bianco").get(random.nextInt(2)), List.of("Torino", "Milano").get(random.nextInt(2)),
+				random.nextInt(4) != 0, LocalDateTime.of(2025, 1, 1, 0, 0).plusHours(random.nextInt(1000)),
+				geocoded ? 45 + random.nextDouble() : null, geocoded ? 7 + random.nextDouble() : null,
+				"Annuncio " + id, "Descrizione");
+	}
+}
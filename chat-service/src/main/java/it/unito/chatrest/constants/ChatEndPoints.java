@@ -16,6 +16,12 @@ public class ChatEndPoints {
     /** URL to get only the unreaded messages of a specific chat */
     public static final String GET_UNREAD_MESSAGES = "/unread";
 
+    /** URL to get the inbox of a user: their chats with the last message and the number of unread messages */
+    public static final String GET_INBOX = "/inbox";
+
+    /** URL to get the total number of unread messages of a user */
+    public static final String GET_UNREAD_COUNT = "/unread/count";
+
     /** URL to send an adoption request related to a specific chat for a specific adoption post */
     public static final String SEND_ADOPTION_REQUEST = "/send-request";
 
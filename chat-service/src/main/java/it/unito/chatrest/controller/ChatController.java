@@ -1,9 +1,12 @@
 package it.unito.chatrest.controller;
 
+import it.unito.chatrest.dto.ChatDto;
 import it.unito.chatrest.dto.ChatRequest;
-import it.unito.chatrest.model.Chat;
+import it.unito.chatrest.dto.InboxChatDto;
 import it.unito.chatrest.model.Message;
 import it.unito.chatrest.service.ChatService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -20,12 +23,15 @@ import static it.unito.chatrest.constants.ChatEndPoints.*;
  * - Sending messages in new or existing chats
  * - Retrieving the list of user chats
  * - Getting chat history and unread messages
+ * - Getting the inbox with the unread count of each chat, and the total unread count
  * - Handling adoption requests through chat (send, cancel, accept, reject)
  */
 @RestController
 @RequestMapping("/chat")
 public class ChatController {
 
+    private static final int MAX_CHATS_PAGE_SIZE = 100;
+
     private final ChatService chatService;
 
     /**
@@ -67,14 +73,25 @@ public class ChatController {
     }
 
     /**
-     * Retrieves the list of chats for the specified user.
+     * Retrieves the list of chats for the specified user, most recent activity first.
+     * Each chat carries its last message (ID, time and preview). Without a size all the chats are returned.
      *
      * @param userId [from header] the ID of the user whose chats are requested
-     * @return ResponseEntity containing the list of chats
+     * @param page the page number, starting from 0
+     * @param size the number of chats per page (1-100), omitted for all the chats
+     * @return ResponseEntity containing the list of chats, or 400 if the page is negative
      */
     @PostMapping(GET_CHATS)
-    public ResponseEntity<List<Chat>> getChatsForUser(@RequestHeader("User-Id") Long userId) {
-        List<Chat> chats = chatService.getChatsForUser(userId);
+    public ResponseEntity<List<ChatDto>> getChatsForUser(@RequestHeader("User-Id") Long userId,
+                                                      @RequestParam(defaultValue = "0") int page,
+                                                      @RequestParam(required = false) Integer size) {
+        if (page < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        Pageable pageable = size != null
+                ? PageRequest.of(page, Math.max(1, Math.min(size, MAX_CHATS_PAGE_SIZE)))
+                : Pageable.unpaged();
+        List<ChatDto> chats = chatService.getChatsForUser(userId, pageable);
         return ResponseEntity.ok(chats);
     }
 
@@ -104,6 +121,37 @@ public class ChatController {
         return ResponseEntity.ok(unreadMessages);
     }
 
+    /**
+     * Retrieves the inbox of the specified user, most recent activity first: each chat with the other user,
+     * the preview of the last message and the number of unread messages. Messages are not marked as seen.
+     *
+     * @param userId [from header] the ID of the user whose inbox is requested
+     * @param page the page number, starting from 0
+     * @param size the number of chats per page (1-100)
+     * @return ResponseEntity containing the chats of the page, or 400 if the page is negative
+     */
+    @GetMapping(GET_INBOX)
+    public ResponseEntity<List<InboxChatDto>> getInbox(@RequestHeader("User-Id") Long userId,
+                                                       @RequestParam(defaultValue = "0") int page,
+                                                       @RequestParam(defaultValue = "20") int size) {
+        if (page < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        Pageable pageable = PageRequest.of(page, Math.max(1, Math.min(size, MAX_CHATS_PAGE_SIZE)));
+        return ResponseEntity.ok(chatService.getInbox(userId, pageable));
+    }
+
+    /**
+     * Retrieves the total number of unread messages of the specified user, for the badge.
+     *
+     * @param userId [from header] the ID of the user
+     * @return ResponseEntity containing the number of unread messages
+     */
+    @GetMapping(GET_UNREAD_COUNT)
+    public ResponseEntity<Long> getUnreadCount(@RequestHeader("User-Id") Long userId) {
+        return ResponseEntity.ok(chatService.getUnreadCount(userId));
+    }
+
     /**
      * Sends an adoption request related to a specific chat and adoption post.
      *
@@ -0,0 +1,16 @@
+package it.unito.chatrest.dto;
+
+/**
+ * Message broadcast to all the replicas of the chat service when an entity kept in the second-level cache
+ * is created, updated or deleted, so each replica can evict its stale copy.
+ *
+ * @param origin ID of the replica that made the change
+ * @param entity Hibernate name of the entity
+ * @param id     ID of the changed entity
+ */
+public record CacheEvictionMessage(
+        String origin,
+        String entity,
+        Long id
+) {
+}
@@ -0,0 +1,28 @@
+package it.unito.chatrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO representing a chat with its last message.
+ * Used for the list of the chats of a user
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class ChatDto {
+    private Long id;
+    private Long ownerId;
+    private Long adopterId;
+    private Long adoptionPostId;
+    private boolean requestFlag;
+    private boolean acceptedFlag;
+    private Long lastMessageId; // null if the chat has no messages
+    private LocalDateTime lastMessageAt;
+    private String lastMessagePreview;
+}
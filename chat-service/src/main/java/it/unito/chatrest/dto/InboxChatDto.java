@@ -0,0 +1,28 @@
+package it.unito.chatrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO representing a chat in the inbox of a user.
+ * Used for the inbox, with the last message and the number of messages the user has not read yet
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class InboxChatDto {
+    private Long chatId;
+    private Long adoptionPostId;
+    private Long counterpartId; // the other user of the chat
+    private boolean requestFlag;
+    private boolean acceptedFlag;
+    private Long lastMessageId; // null if the chat has no messages
+    private LocalDateTime lastMessageAt;
+    private String lastMessagePreview;
+    private long unreadCount;
+}
@@ -1,23 +1,32 @@
 package it.unito.chatrest.model;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
 @Setter
 @Entity
+// re-read on every adoption request and on most messages; other replicas are notified by CacheEvictionService
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "chats")
 public class Chat {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_ids")
+    // pooled allocation: one call to the sequence every 50 inserts, which can be batched
+    @SequenceGenerator(name = "chat_ids", sequenceName = "data_seq", allocationSize = 50)
     private Long id;
 
     private Long ownerId;
@@ -26,4 +35,6 @@ public class Chat {
 
     private boolean requestFlag;
     private boolean acceptedFlag;
+
+    // the last message of the chat is mapped by ChatActivity, so that messages do not change the cached chat
 }
\ No newline at end of file
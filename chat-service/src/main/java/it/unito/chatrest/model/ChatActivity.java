@@ -0,0 +1,31 @@
+package it.unito.chatrest.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Last message of a chat, updated by ChatService.sendMessage on every message.
+ * Mapped on the chat table next to {@link Chat}, but kept out of the second-level cache: a message must not
+ * update the cached chat, nor make every replica evict it. Rows are created with their chat.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "chat")
+public class ChatActivity {
+
+    @Id
+    private Long id; // ID of the chat
+
+    // null if the chat has no messages
+    private Long lastMessageId;
+    private LocalDateTime lastMessageAt;
+    private String lastMessagePreview;
+}
@@ -13,7 +13,9 @@ import java.time.LocalDateTime;
 public class Message {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_ids")
+    // pooled allocation: one call to the sequence every 50 inserts, which can be batched
+    @SequenceGenerator(name = "message_ids", sequenceName = "data_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false)
@@ -1,15 +1,37 @@
 package it.unito.chatrest.repository;
 
+import it.unito.chatrest.dto.ChatDto;
+import it.unito.chatrest.dto.InboxChatDto;
 import it.unito.chatrest.model.Chat;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
 
 public interface ChatRepository extends JpaRepository<Chat, Long> {
 
-    List<Chat> findByOwnerIdOrAdopterId(Long ownerId, Long adopterId);
+    // chats of a user, most recent activity first (chats without messages last);
+    // not cached: every message changes the chat table, which would invalidate the results
+    @Query("select new it.unito.chatrest.dto.ChatDto(c.id, c.ownerId, c.adopterId, c.adoptionPostId, "
+            + "c.requestFlag, c.acceptedFlag, a.lastMessageId, a.lastMessageAt, a.lastMessagePreview) "
+            + "from Chat c join ChatActivity a on a.id = c.id where c.ownerId = :userId or c.adopterId = :userId "
+            + "order by a.lastMessageAt desc nulls last, c.id desc")
+    List<ChatDto> findInbox(@Param("userId") Long userId, Pageable pageable);
 
+    // same order, with the other user and the number of messages the user has not read in each chat
+    // (counted on the partial index of the unread messages)
+    @Query("select new it.unito.chatrest.dto.InboxChatDto(c.id, c.adoptionPostId, "
+            + "case when c.ownerId = :userId then c.adopterId else c.ownerId end, c.requestFlag, c.acceptedFlag, "
+            + "a.lastMessageId, a.lastMessageAt, a.lastMessagePreview, "
+            + "(select count(m) from Message m where m.chat = c and m.receiverId = :userId and m.seen = false)) "
+            + "from Chat c join ChatActivity a on a.id = c.id where c.ownerId = :userId or c.adopterId = :userId "
+            + "order by a.lastMessageAt desc nulls last, c.id desc")
+    List<InboxChatDto> findInboxWithUnreadCounts(@Param("userId") Long userId, Pageable pageable);
+
+    // not cached either: the results would be invalidated by every message, like those above
     Optional<Chat> findByAdopterIdAndOwnerIdAndAdoptionPostId(Long adopterId, Long ownerId, Long adoptionPostId);
 
 }
@@ -3,19 +3,29 @@ package it.unito.chatrest.repository;
 import java.util.List;
 import it.unito.chatrest.model.Message;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
-    Message findFirstByChatIdOrderByTimeStampDesc(Long chatId);
-
     List<Message> findByChatIdAndReceiverIdAndSeenFalse(Long chatId, Long receiverId);
 
     List<Message> findByChatIdAndReceiverIdAndSeenFalseOrderByTimeStampAsc(Long chatId, Long receiverId);
 
     List<Message> findByChatIdOrderByTimeStampAsc(Long chatId);
 
+    // both return the number of messages marked as seen by this call, not by a concurrent one
+    @Modifying
+    @Query("update Message m set m.seen = true where m.chat.id = :chatId and m.receiverId = :receiverId and m.seen = false")
+    int markSeen(@Param("chatId") Long chatId, @Param("receiverId") Long receiverId);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Message m set m.seen = true where m.id in :ids and m.seen = false")
+    int markSeenByIds(@Param("ids") List<Long> ids);
+
 
 
 }
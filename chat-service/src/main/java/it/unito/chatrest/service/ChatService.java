@@ -1,15 +1,23 @@
 package it.unito.chatrest.service;
 
+import it.unito.chatrest.dto.ChatDto;
+import it.unito.chatrest.dto.InboxChatDto;
 import it.unito.chatrest.dto.MessageSendRequest;
 import it.unito.chatrest.model.Chat;
+import it.unito.chatrest.model.ChatActivity;
 import it.unito.chatrest.model.Message;
 import it.unito.chatrest.repository.ChatRepository;
 import it.unito.chatrest.repository.MessageRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Service class responsible for managing chat interactions between users,
@@ -18,9 +26,15 @@ import java.util.List;
  */
 @Service
 public class ChatService {
+
+    /** Maximum length of the preview of the last message kept on the chat */
+    public static final int PREVIEW_LENGTH = 100;
+
     private final ChatRepository chatRepository;
     private final MessageRepository messageRepository;
     private final SenderRabbitMQService senderRabbitMQService;
+    private final UnreadCountService unreadCountService;
+    private final EntityManager entityManager;
 
     /**
      * Constructs a new ChatService with the required dependencies.
@@ -28,55 +42,72 @@ public class ChatService {
      * @param chatRepository          repository for managing chat data
      * @param messageRepository       repository for managing message data
      * @param senderRabbitMQService   service for sending events and notifications via RabbitMQ
+     * @param unreadCountService      service keeping the number of unread messages of each user
+     * @param entityManager           used to lock the chat while its last message is updated
      */
     public ChatService(ChatRepository chatRepository,
                          MessageRepository messageRepository,
-                         SenderRabbitMQService senderRabbitMQService) {
+                         SenderRabbitMQService senderRabbitMQService,
+                         UnreadCountService unreadCountService,
+                         EntityManager entityManager) {
         this.chatRepository = chatRepository;
         this.messageRepository = messageRepository;
         this.senderRabbitMQService = senderRabbitMQService;
+        this.unreadCountService = unreadCountService;
+        this.entityManager = entityManager;
     }
 
     /**
-     * Sends a new message in an existing or new chat and notifying the receiver
+     * Sends a new message in an existing or new chat and notifying the receiver.
+     * The message becomes the last message of the chat: the chat row is locked until commit,
+     * so concurrent messages in the same chat update it in the order they are saved.
+     * The last message is kept on {@link ChatActivity}, so the chat in the second-level cache is not changed.
      *
      * @param request the message send request
      * @param userId  the ID of the user performing the operation
      * @return the saved {@link Message} entity
      * @throws IllegalArgumentException if the sender does not match the user or if the chat or adoption post is not found
      */
+    @Transactional
     public Message sendMessage(MessageSendRequest request, Long userId) {
 
         Chat chat;
+        ChatActivity activity;
 
         if(!request.getSenderId().equals(userId)) {
             throw new IllegalArgumentException("No sender match"); //errore 403
         }
 
         if (request.getChatId() != null) {
-            //recover the chat
+            //recover the chat, locked until commit
             chat = chatRepository.findById(request.getChatId())
                     .orElseThrow(() -> new IllegalArgumentException("Chat not found")); //404
+            activity = lock(chat);
         } else {
 
             if (request.getAdoptionPostId() == null) {
                 throw new IllegalArgumentException("Adoption post not found"); //400
             }
 
-            chat = chatRepository.findByAdopterIdAndOwnerIdAndAdoptionPostId(
+            Optional<Chat> existingChat = chatRepository.findByAdopterIdAndOwnerIdAndAdoptionPostId(
                     request.getSenderId(),
                     request.getReceiverId(),
                     request.getAdoptionPostId()
-            ).orElseGet(() -> {
+            );
+            if (existingChat.isPresent()) {
+                chat = existingChat.get();
+                activity = lock(chat);
+            } else {
                 //create new chat
-                Chat newChat = new Chat();
-                newChat.setAdopterId(request.getSenderId());
-                newChat.setOwnerId(request.getReceiverId());
-                newChat.setAdoptionPostId(request.getAdoptionPostId());
-                newChat.setRequestFlag(false);
-                newChat.setAcceptedFlag(false);
-                return chatRepository.save(newChat);
-            });
+                chat = new Chat();
+                chat.setAdopterId(request.getSenderId());
+                chat.setOwnerId(request.getReceiverId());
+                chat.setAdoptionPostId(request.getAdoptionPostId());
+                chat.setRequestFlag(false);
+                chat.setAcceptedFlag(false);
+                chat = chatRepository.saveAndFlush(chat); // inserted, so its activity can be read
+                activity = lock(chat);
+            }
         }
 
         // Create and save message
@@ -87,6 +118,13 @@ public class ChatService {
         message.setMessage(request.getMessage());
         message.setTimeStamp(LocalDateTime.now());
         message.setSeen(false);
+        message = messageRepository.save(message);
+
+        // the chat is updated at commit, with the message
+        activity.setLastMessageId(message.getId());
+        activity.setLastMessageAt(message.getTimeStamp());
+        activity.setLastMessagePreview(preview(message.getMessage()));
+        unreadCountService.add(message.getReceiverId(), 1);
 
         //send email notification
         senderRabbitMQService.sendNewMessageEmail(request.getReceiverId(), request.getSenderId(), request.getMessage());
@@ -97,32 +135,20 @@ public class ChatService {
                 + "\nMessage: " + request.getMessage()
         );
 
-        return messageRepository.save(message);
+        return message;
     }
 
     /**
-     * Retrieves all chats involving the given user and sorts them by most recent message
+     * Retrieves the chats involving the given user, most recent activity first
+     * (chats without messages last), each with its last message.
      *
-     * @param userId the ID of the user
-     * @return a list of {@link Chat} objects sorted by last activity
+     * @param userId   the ID of the user
+     * @param pageable the page of chats to return (unpaged for all of them)
+     * @return a list of {@link ChatDto} objects sorted by last activity
      */
-    public List<Chat> getChatsForUser(Long userId) {
-        List<Chat> chats = chatRepository.findByOwnerIdOrAdopterId(userId, userId);
-
-        // Map chats to their last message
-        chats.sort((c1, c2) -> {
-            Message m1 = messageRepository.findFirstByChatIdOrderByTimeStampDesc(c1.getId());
-            Message m2 = messageRepository.findFirstByChatIdOrderByTimeStampDesc(c2.getId());
-
-            // Chat senza messaggi vanno in fondo
-            if (m1 == null && m2 == null) return 0;
-            if (m1 == null) return 1;
-            if (m2 == null) return -1;
-
-            return m2.getTimeStamp().compareTo(m1.getTimeStamp());
-        });
-
-        return chats;
+    @Transactional(readOnly = true)
+    public List<ChatDto> getChatsForUser(Long userId, Pageable pageable) {
+        return chatRepository.findInbox(userId, pageable);
     }
 
     /**
@@ -132,19 +158,13 @@ public class ChatService {
      * @param userId the ID of the user
      * @return list of {@link Message} ordered by timestamp ascending
      */
+    @Transactional
     public List<Message> getChatMessagesAndMarkSeen(Long chatId, Long userId) {
-        // 1. Find unread received messages
-        List<Message> unreadMessages = messageRepository.findByChatIdAndReceiverIdAndSeenFalse(chatId, userId);
+        // 1. Mark unread received messages as read
+        int seen = messageRepository.markSeen(chatId, userId);
+        unreadCountService.add(userId, -seen);
 
-        // 2. Mark them as read
-        for (Message m : unreadMessages) {
-            m.setSeen(true);
-        }
-
-        // 3. Save update
-        messageRepository.saveAll(unreadMessages);
-
-        // 4. Return all sorted messages
+        // 2. Return all sorted messages
         return messageRepository.findByChatIdOrderByTimeStampAsc(chatId);
     }
 
@@ -155,20 +175,50 @@ public class ChatService {
      * @param userId the ID of the receiver
      * @return list of unread {@link Message} objects ordered by timestamp ascending
      */
+    @Transactional
     public List<Message> getUnreadMessagesAndMarkSeen(Long chatId, Long userId) {
         //Find unread received messages
         List<Message> unreadMessages = messageRepository.findByChatIdAndReceiverIdAndSeenFalseOrderByTimeStampAsc(
                 chatId, userId
         );
+        if (unreadMessages.isEmpty()) {
+            return unreadMessages;
+        }
 
+        // the returned messages are detached by the update, so marking them is not written again
+        int seen = messageRepository.markSeenByIds(unreadMessages.stream().map(Message::getId).toList());
+        unreadCountService.add(userId, -seen);
         for (Message msg : unreadMessages) {
             msg.setSeen(true);
         }
-
-        messageRepository.saveAll(unreadMessages);
         return unreadMessages;
     }
 
+    /**
+     * Retrieves the inbox of a user: their chats, most recent activity first, each with the other user,
+     * the preview of the last message and the number of messages the user has not read.
+     * Nothing is marked as seen.
+     *
+     * @param userId   the ID of the user
+     * @param pageable the page of chats to return
+     * @return the chats of the page
+     */
+    @Transactional(readOnly = true)
+    public List<InboxChatDto> getInbox(Long userId, Pageable pageable) {
+        return chatRepository.findInboxWithUnreadCounts(userId, pageable);
+    }
+
+    /**
+     * Retrieves the total number of unread messages of a user, for the badge.
+     *
+     * @param userId the ID of the user
+     * @return the number of messages received by the user and not read yet
+     */
+    @Transactional(readOnly = true)
+    public long getUnreadCount(Long userId) {
+        return unreadCountService.get(userId);
+    }
+
     /**
      * Sends an adoption request by setting a flag on the chat and notifying the receiver
      *
@@ -176,6 +226,7 @@ public class ChatService {
      * @param adopterId the ID of the adopter sending the request
      * @throws IllegalArgumentException if chat not found or user is not the adopter
      */
+    @Transactional
     public void sendRequest(Long chatId, Long adopterId) {
 
         Chat chat = chatRepository.findById(chatId)
@@ -205,6 +256,7 @@ public class ChatService {
      * @param adopterId the ID of the adopter
      * @throws IllegalArgumentException if chat not found, user is not the adopter, or request not sent yet
      */
+    @Transactional
     public void cancelRequest(Long chatId, Long adopterId) {
 
         Chat chat = chatRepository.findById(chatId)
@@ -238,6 +290,7 @@ public class ChatService {
      * @param ownerId the ID of the owner
      * @throws IllegalArgumentException if chat not found, user is not the owner, or request not sent yet
      */
+    @Transactional
     public void acceptRequest(Long chatId, Long ownerId) {
         Chat chat = chatRepository.findById(chatId)
                 .orElseThrow(() -> new IllegalArgumentException("Chat not found")); // 404
@@ -271,6 +324,7 @@ public class ChatService {
      * @param ownerId the ID of the owner
      * @throws IllegalArgumentException if chat not found, user is not the owner, or request not sent yet
      */
+    @Transactional
     public void rejectRequest(Long chatId, Long ownerId) {
         Chat chat = chatRepository.findById(chatId)
                 .orElseThrow(() -> new IllegalArgumentException("Chat not found")); // 404
@@ -295,4 +349,28 @@ public class ChatService {
         );
     }
 
+    /**
+     * Reads the last message of a chat, locking the chat row until the end of the transaction.
+     *
+     * @param chat the chat, already written to the database
+     * @return the last message of the chat
+     */
+    private ChatActivity lock(Chat chat) {
+        return entityManager.find(ChatActivity.class, chat.getId(), LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    /**
+     * Shortens a message to the preview kept on the chat.
+     *
+     * @param message the message text (may be null)
+     * @return the first PREVIEW_LENGTH characters of the message
+     */
+    private static String preview(String message) {
+        if (message == null || message.length() <= PREVIEW_LENGTH) {
+            return message;
+        }
+        // do not split a surrogate pair
+        int end = Character.isHighSurrogate(message.charAt(PREVIEW_LENGTH - 1)) ? PREVIEW_LENGTH - 1 : PREVIEW_LENGTH;
+        return message.substring(0, end);
+    }
 }
@@ -0,0 +1,65 @@
+package it.unito.chatrest.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Keeps the number of unread messages of each user in the unread_count table.
+ * Counts are changed inside the transactions that send and read the messages, so they commit (or roll back)
+ * together with them. The table is written with JDBC: a native statement run through Hibernate would evict
+ * the whole second-level cache.
+ */
+@Service
+public class UnreadCountService {
+
+    // the count never goes below zero, even if the table was changed by hand
+    private static final String ADD = "insert into %s.unread_count as u (user_id, unread) values (?, greatest(?, 0)) "
+            + "on conflict (user_id) do update set unread = greatest(u.unread + ?, 0)";
+
+    private static final String FIND = "select unread from %s.unread_count where user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String add;
+
+    private final String find;
+
+    /**
+     * Constructor
+     *
+     * @param jdbcTemplate used to write and read the counts, in the current transaction
+     * @param schema       schema of the unread_count table
+     */
+    public UnreadCountService(JdbcTemplate jdbcTemplate,
+                              @Value("${spring.jpa.properties.hibernate.default_schema}") String schema) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.add = ADD.formatted(schema);
+        this.find = FIND.formatted(schema);
+    }
+
+    /**
+     * Changes the number of unread messages of a user.
+     *
+     * @param userId the ID of the user
+     * @param delta  messages received (positive) or read (negative)
+     */
+    public void add(Long userId, long delta) {
+        if (userId != null && delta != 0) {
+            jdbcTemplate.update(add, userId, delta, delta);
+        }
+    }
+
+    /**
+     * Returns the number of unread messages of a user.
+     *
+     * @param userId the ID of the user
+     * @return the number of messages received by the user and not read yet
+     */
+    public long get(Long userId) {
+        List<Long> unread = jdbcTemplate.queryForList(find, Long.class, userId);
+        return unread.isEmpty() ? 0 : unread.get(0);
+    }
+}
@@ -0,0 +1,22 @@
+-- Schema of the chats as created by Hibernate before the migrations were introduced.
+-- Every statement is idempotent, so it also runs on databases baselined at version 0.
+
+create table if not exists chat (
+    id bigint generated by default as identity primary key,
+    owner_id bigint,
+    adopter_id bigint,
+    adoption_post_id bigint,
+    request_flag boolean not null,
+    accepted_flag boolean not null
+);
+
+create table if not exists message (
+    id bigint generated by default as identity primary key,
+    chat_id bigint not null,
+    sender_id bigint,
+    receiver_id bigint,
+    message varchar(255),
+    time_stamp timestamp(6),
+    seen boolean not null,
+    constraint fk_message_chat foreign key (chat_id) references chat (id)
+);
@@ -0,0 +1,17 @@
+-- Indexes matched to the queries of ChatRepository and MessageRepository.
+
+-- chats of a user, as owner or as adopter (combined with a bitmap OR)
+create index idx_chat_owner_id
+    on chat (owner_id);
+
+-- the chat between an adopter and an owner about a post; its leading column also serves the adopter side above
+create index idx_chat_adopter_id_owner_id_adoption_post_id
+    on chat (adopter_id, owner_id, adoption_post_id);
+
+-- history of a chat and its last message, in time order; also indexes the foreign key
+create index idx_message_chat_id_time_stamp
+    on message (chat_id, time_stamp);
+
+-- unread messages of a receiver in a chat: only a small fraction of the messages
+create index idx_message_unseen_chat_id_receiver_id_time_stamp
+    on message (chat_id, receiver_id, time_stamp) where not seen;
@@ -0,0 +1,17 @@
+-- Last message of each chat, kept with the chat by ChatService.sendMessage (mapped by ChatActivity), so the inbox
+-- is sorted by last activity without looking up the last message of every chat.
+-- No index is ordered by last activity: the chats of a user are found through the indexes of V2 and then sorted,
+-- since a user has at most a few hundred chats.
+
+alter table chat add column if not exists last_message_id bigint;
+alter table chat add column if not exists last_message_at timestamp(6);
+alter table chat add column if not exists last_message_preview varchar(255);
+
+update chat c
+set last_message_id = m.id,
+    last_message_at = m.time_stamp,
+    last_message_preview = left(m.message, 100)
+from (select distinct on (chat_id) chat_id, id, time_stamp, message
+      from message
+      order by chat_id, time_stamp desc, id desc) m
+where m.chat_id = c.id;
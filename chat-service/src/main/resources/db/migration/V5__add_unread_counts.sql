@@ -0,0 +1,14 @@
+-- Number of unread messages of each user, for the badge: kept by ChatService as messages are sent and read,
+-- so it is read without counting the messages.
+
+create table if not exists unread_count (
+    user_id bigint primary key,
+    unread bigint not null
+);
+
+insert into unread_count (user_id, unread)
+select receiver_id, count(*)
+from message
+where not seen and receiver_id is not null
+group by receiver_id
+on conflict (user_id) do update set unread = excluded.unread;
@@ -0,0 +1,97 @@
+package it.unito.chatrest;
+
+import it.unito.chatrest.model.Chat;
+import it.unito.chatrest.model.Message;
+import it.unito.chatrest.repository.ChatRepository;
+import it.unito.chatrest.repository.MessageRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the time needed to insert the messages of a chat one at a time, as Hibernate did with IDENTITY IDs
+ * (one insert returning the generated ID per message), and with the pooled sequence, which lets Hibernate
+ * send them in JDBC batches (rewritten as multi-row inserts by the driver).
+ * Skipped unless run with -Dbenchmark=true (and Docker available), e.g.
+ * mvn test -Dtest=InsertBatchingBenchmark -Dbenchmark=true
+ */
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class InsertBatchingBenchmark {
+
+    private static final int MESSAGES = 5_000;
+
+    private static final int ROUNDS = 5;
+
+    private static final String INSERT_RETURNING_ID = "insert into schema_chat.message "
+            + "(id, chat_id, sender_id, receiver_id, message, time_stamp, seen) "
+            + "values (nextval('schema_chat.data_seq'), ?, ?, ?, ?, ?, false) returning id";
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17-alpine");
+
+    @Autowired
+    private ChatRepository chatRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void compareMessageInserts() {
+        Chat chat = chatRepository.saveAndFlush(new Chat(null, 1L, 2L, 3L, true, false));
+        System.out.printf("%-28s %12s %14s%n", "inserimento", "ms", "messaggi/s");
+        for (int round = 0; round < ROUNDS; round++) {
+            List<Message> messages = messages(chat);
+            long start = System.nanoTime();
+            for (Message message : messages) {
+                jdbcTemplate.queryForObject(INSERT_RETURNING_ID, Long.class, chat.getId(), message.getSenderId(),
+                        message.getReceiverId(), message.getMessage(), message.getTimeStamp());
+            }
+            print("uno alla volta (IDENTITY)", System.nanoTime() - start);
+
+            messages = messages(chat);
+            start = System.nanoTime();
+            messageRepository.saveAll(messages);
+            entityManager.flush();
+            print("batch (sequenza pooled)", System.nanoTime() - start);
+            entityManager.clear();
+            chat = entityManager.find(Chat.class, chat.getId());
+        }
+    }
+
+    private static List<Message> messages(Chat chat) {
+        List<Message> messages = new ArrayList<>(MESSAGES);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < MESSAGES; i++) {
+            messages.add(new Message(null, chat, i % 2 == 0 ? 1L : 2L, i % 2 == 0 ? 2L : 1L,
+                    "Messaggio numero " + i + " sull'adozione", now.plusSeconds(i), false));
+        }
+        return messages;
+    }
+
+    private static void print(String name, long nanos) {
+        double millis = nanos / 1_000_000.0;
+        System.out.printf("%-28s %12.1f %14.0f%n", name, millis, MESSAGES / (millis / 1_000));
+    }
+}
@@ -0,0 +1,213 @@
+package it.unito.chatrest;
+
+import it.unito.chatrest.repository.ChatRepository;
+import it.unito.chatrest.repository.MessageRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.PageRequest;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the repository queries are served by the indexes created by the migrations.
+ * Each repository method is run on a schema filled with generated chats and messages and analyzed (on empty
+ * tables the planner picks whichever index is smallest), and the SQL it executes is explained (generic plan,
+ * sequential scans disabled): the plan must not scan a table and must use the expected index.
+ * Skipped when Docker is not available.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "it.unito.chatrest.QueryIndexUsageTests$RecordingInspector",
+        // every call must reach the database
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class QueryIndexUsageTests {
+
+    private static final Pattern UNTYPED_PARAMETER = Pattern.compile("could not determine data type of parameter \\$(\\d+)");
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17-alpine");
+
+    /**
+     * Records the SQL executed by Hibernate.
+     */
+    public static class RecordingInspector implements StatementInspector {
+
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+
+    @Autowired
+    private ChatRepository chatRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private static boolean populated = false;
+
+    @BeforeEach
+    void populate() throws Exception {
+        if (populated) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            // ten chats per owner and four per adopter; a twentieth of the messages not seen yet
+            statement.execute("""
+                    insert into schema_chat.chat (id, owner_id, adopter_id, adoption_post_id, request_flag, accepted_flag,
+                        last_message_id, last_message_at, last_message_preview)
+                    select i, 1 + i % 2000, 1 + i % 5000, 1 + i % 7000, i % 3 = 0, i % 9 = 0,
+                        180000 + i, timestamp '2024-01-01' + i * interval '1 hour', 'Messaggio ' || i
+                    from generate_series(1, 20000) i
+                    """);
+            statement.execute("""
+                    insert into schema_chat.message (id, chat_id, sender_id, receiver_id, message, time_stamp, seen)
+                    select i, 1 + i % 20000, 1 + i % 2000, 1 + i % 5000, 'Messaggio ' || i,
+                        timestamp '2024-01-01' + i * interval '1 minute', i % 20 <> 0
+                    from generate_series(1, 200000) i
+                    """);
+            statement.execute("analyze schema_chat.chat");
+            statement.execute("analyze schema_chat.message");
+        }
+        populated = true;
+    }
+
+    @Test
+    void chatsOfUserUseOwnerAndAdopterIndexes() throws Exception {
+        // owner_id and adopter_id conditions are combined with a bitmap OR
+        assertUsesIndex("idx_chat_owner_id",
+                () -> chatRepository.findInbox(1L, PageRequest.of(0, 20)));
+        assertUsesIndex("idx_chat_adopter_id_owner_id_adoption_post_id",
+                () -> chatRepository.findInbox(1L, PageRequest.of(0, 20)));
+    }
+
+    @Test
+    void chatOfPostUsesCompositeIndex() throws Exception {
+        assertUsesIndex("idx_chat_adopter_id_owner_id_adoption_post_id",
+                () -> chatRepository.findByAdopterIdAndOwnerIdAndAdoptionPostId(1L, 2L, 3L));
+    }
+
+    @Test
+    void chatHistoryUsesChatIndex() throws Exception {
+        assertUsesIndex("idx_message_chat_id_time_stamp", () -> messageRepository.findByChatIdOrderByTimeStampAsc(1L));
+    }
+
+    @Test
+    void unreadMessagesUsePartialIndex() throws Exception {
+        assertUsesIndex("idx_message_unseen_chat_id_receiver_id_time_stamp",
+                () -> messageRepository.findByChatIdAndReceiverIdAndSeenFalse(1L, 2L));
+        assertUsesIndex("idx_message_unseen_chat_id_receiver_id_time_stamp",
+                () -> messageRepository.findByChatIdAndReceiverIdAndSeenFalseOrderByTimeStampAsc(1L, 2L));
+        assertUsesIndex("idx_message_unseen_chat_id_receiver_id_time_stamp",
+                () -> messageRepository.markSeen(1L, 2L));
+    }
+
+    @Test
+    void inboxCountsUnreadMessagesOnPartialIndex() throws Exception {
+        assertUsesIndex("idx_chat_owner_id",
+                () -> chatRepository.findInboxWithUnreadCounts(1L, PageRequest.of(0, 20)));
+        assertUsesIndex("idx_message_unseen_chat_id_receiver_id_time_stamp",
+                () -> chatRepository.findInboxWithUnreadCounts(1L, PageRequest.of(0, 20)));
+    }
+
+    /**
+     * Runs a repository call and checks the plans of the statements it executes.
+     * The first statement is the query of the call; the others load the chats of the messages it returns.
+     *
+     * @param index index that the query must use
+     * @param call  the repository call
+     */
+    private void assertUsesIndex(String index, Runnable call) throws Exception {
+        RecordingInspector.statements.clear();
+        call.run();
+        assertThat(RecordingInspector.statements).isNotEmpty();
+        for (String sql : RecordingInspector.statements) {
+            String plan = explain(sql);
+            assertThat(plan).as(sql).doesNotContain("Seq Scan");
+        }
+        String query = RecordingInspector.statements.get(0);
+        assertThat(explain(query)).as(query).contains(index);
+    }
+
+    private String explain(String sql) throws Exception {
+        // the statement is prepared with $n parameters and explained with a generic plan, which does not
+        // depend on the values (explain (generic_plan) cannot be sent by the driver, which would bind them)
+        StringBuilder numbered = new StringBuilder();
+        int parameter = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                numbered.append('$').append(++parameter);
+            } else {
+                numbered.append(c);
+            }
+        }
+        StringBuilder plan = new StringBuilder();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("set enable_seqscan = off");
+            statement.execute("set plan_cache_mode = force_generic_plan");
+            prepare(statement, numbered.toString(), parameter);
+            String arguments = parameter > 0 ? "(" + String.join(", ", Collections.nCopies(parameter, "null")) + ")" : "";
+            try (ResultSet rows = statement.executeQuery("explain execute explained" + arguments)) {
+                while (rows.next()) {
+                    plan.append(rows.getString(1)).append('\n');
+                }
+            }
+            statement.execute("deallocate explained");
+            statement.execute("reset plan_cache_mode");
+            statement.execute("reset enable_seqscan");
+        }
+        return plan.toString();
+    }
+
+    /**
+     * Prepares a statement as "explained". Parameters whose type the server cannot infer (such as in
+     * "? is null") are declared as text, which is how the driver binds strings.
+     */
+    private static void prepare(Statement statement, String sql, int parameters) throws SQLException {
+        String[] types = new String[parameters];
+        Arrays.fill(types, "unknown");
+        while (true) {
+            try {
+                statement.execute("prepare explained" + (parameters > 0 ? "(" + String.join(", ", types) + ")" : "")
+                        + " as " + sql);
+                return;
+            } catch (SQLException e) {
+                Matcher untyped = UNTYPED_PARAMETER.matcher(String.valueOf(e.getMessage()));
+                if (!untyped.find() || !types[Integer.parseInt(untyped.group(1)) - 1].equals("unknown")) {
+                    throw e;
+                }
+                types[Integer.parseInt(untyped.group(1)) - 1] = "text";
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package it.unito.chatrest;
+
+import it.unito.chatrest.config.ReplicaDataSourceConfig;
+import it.unito.chatrest.config.ReplicationLagGuard;
+import it.unito.chatrest.model.Chat;
+import it.unito.chatrest.repository.ChatRepository;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that read-only transactions go to the replica, unless the user has just written to the primary.
+ * Two independent Postgres containers stand in for the primary and the replica: the rows written to the primary
+ * never reach the replica, so whether a row is found tells which database was read.
+ * Skipped when Docker is not available.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(TransactionManagerCustomizationAutoConfiguration.class)
+@Import(ReplicaDataSourceConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+class ReplicaRoutingTests {
+
+    @Container
+    static PostgreSQLContainer<?> primary = new PostgreSQLContainer<>("postgres:17-alpine");
+
+    @Container
+    static PostgreSQLContainer<?> replica = new PostgreSQLContainer<>("postgres:17-alpine");
+
+    @DynamicPropertySource
+    static void dataSources(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", primary::getJdbcUrl);
+        registry.add("spring.datasource.username", primary::getUsername);
+        registry.add("spring.datasource.password", primary::getPassword);
+        registry.add("app.datasource.replica.enabled", () -> "true");
+        registry.add("app.datasource.replica.url", replica::getJdbcUrl);
+        registry.add("app.datasource.replica.pin-after-write", () -> "PT1S");
+    }
+
+    @BeforeAll
+    static void migrateReplica() {
+        // the replica has the same schema, but none of the rows
+        Flyway.configure()
+                .dataSource(replica.getJdbcUrl(), replica.getUsername(), replica.getPassword())
+                .schemas("schema_chat")
+                .defaultSchema("schema_chat")
+                .load()
+                .migrate();
+    }
+
+    @Autowired
+    private ChatRepository chatRepository;
+
+    @Autowired
+    private ReplicationLagGuard replicationLagGuard;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void readOnlyTransactionsUseReplica() {
+        Long chatId = chatRepository.save(new Chat(null, 1L, 2L, 3L, false, false)).getId();
+
+        assertThat(chatRepository.findById(chatId)).isEmpty();
+        // read-write transaction
+        Optional<Chat> fromPrimary = new TransactionTemplate(transactionManager)
+                .execute(status -> chatRepository.findById(chatId));
+        assertThat(fromPrimary).isPresent();
+    }
+
+    @Test
+    void usersReadTheirOwnWritesFromPrimary() throws Exception {
+        Long chatId = asUser(1L, () -> chatRepository.save(new Chat(null, 1L, 2L, 4L, false, false)).getId());
+
+        assertThat(asUser(1L, () -> chatRepository.findById(chatId))).isPresent();
+        assertThat(asUser(2L, () -> chatRepository.findById(chatId))).isEmpty();
+        assertThat(chatRepository.findById(chatId)).isEmpty();
+
+        Thread.sleep(1_500);
+        assertThat(asUser(1L, () -> chatRepository.findById(chatId))).isEmpty();
+    }
+
+    // runs a call as part of a request of the given user
+    private <T> T asUser(Long userId, Supplier<T> call) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("User-Id", userId);
+        AtomicReference<T> result = new AtomicReference<>();
+        replicationLagGuard.doFilter(request, new MockHttpServletResponse(), (req, res) -> result.set(call.get()));
+        return result.get();
+    }
+}
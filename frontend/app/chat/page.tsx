@@ -87,18 +87,16 @@ export default function ChatPage() {
             })
             setProfilesMap(profilesMap)
 
-            const posts = await Promise.all(
-                uniquePostIds.map(async (id) => {
-                    const res = await fetch(`http://localhost:8090/adoption/get/post/${id}`)
-                    if (!res.ok) throw new Error(`Errore fetch postId ${id}`)
-                    return res.json()
-                })
-            )
-
             const postsMap: Record<number, AdoptionPostDetailDto> = {}
-            uniquePostIds.forEach((id, idx) => {
-                postsMap[id] = posts[idx]
-            })
+            if (uniquePostIds.length > 0) {
+                // un'unica richiesta per tutti gli annunci delle chat
+                const postsRes = await fetch(`http://localhost:8090/adoption/get/summaries?ids=${uniquePostIds.join(",")}`)
+                if (!postsRes.ok) throw new Error("Errore fetch annunci delle chat")
+                const lookups: { id: number, found: boolean, post: AdoptionPostDetailDto | null }[] = await postsRes.json()
+                lookups.forEach((lookup) => {
+                    if (lookup.found && lookup.post) postsMap[lookup.id] = lookup.post
+                })
+            }
             setAdoptionPostsMap(postsMap)
         } catch (err) {
             console.error("Errore durante il caricamento delle chat e dettagli:", err)
@@ -11,6 +11,7 @@ import {
 import ExpandedAdoptionCard from "@/components/adoption/ExpandedAdoptionCard"
 import SearchFilters from "@/components/adoption/SearchFilters"
 import Image from "next/image"
+import { postImageUrl } from "@/lib/utils"
 import {
     Pagination,
     PaginationContent,
@@ -29,7 +30,9 @@ interface AdoptionPost {
     age: number
     color: string
     location: string
-    imageBase64: string
+    imageKey: string | null
+    imagePlaceholder?: string | null
+    distanceKm?: number | null
 }
 
 interface AdoptionPostDetail {
@@ -45,7 +48,7 @@ interface AdoptionPostDetail {
     location: string
     ownerId: number
     ownerName: string
-    imageBase64: string
+    imageKey: string | null
 }
 
 interface Filters {
@@ -57,6 +60,9 @@ interface Filters {
     minAge?: string
     maxAge?: string
     activeOnly?: boolean
+    query?: string
+    near?: string
+    radiusKm?: string
 }
 
 export default function HomePage() {
@@ -86,6 +92,7 @@ export default function HomePage() {
             params.append("page", page.toString())
             params.append("size", pageSize.toString())
             params.append("activeOnly", "True")
+            if (filters.near) params.append("sort", "distance")
             const res = await fetch(`http://localhost:8090/adoption/get/list?${params.toString()}`)
             if (!res.ok) throw new Error("Errore nella richiesta")
             const data = await res.json()
@@ -169,7 +176,9 @@ export default function HomePage() {
                         </CardHeader>
                         <div className="relative w-[95%] h-48 overflow-hidden rounded-md mx-auto">
                             <Image
-                                src={post.imageBase64 ? `data:image/jpeg;base64,${post.imageBase64}` : "/no_content.jpg"}
+                                src={postImageUrl(post.imageKey, undefined, "medium")}
+                                placeholder={post.imagePlaceholder ? "blur" : "empty"}
+                                blurDataURL={post.imagePlaceholder ?? undefined}
                                 alt={`Immagine di ${post.name}`}
                                 fill
                                 className="object-cover"
@@ -177,7 +186,10 @@ export default function HomePage() {
                             />
                         </div>
                         <CardContent>
-                            <p><strong>Provincia:</strong> {post.location}</p>
+                            <p>
+                                <strong>Provincia:</strong> {post.location}
+                                {post.distanceKm != null && ` (${Math.round(post.distanceKm)} km)`}
+                            </p>
                             <p><strong>Età:</strong> {post.age} mesi</p>
                             <p><strong>Colore:</strong> {post.color}</p>
                             <p><strong>Sesso:</strong> {post.gender === "M" ? "Maschio" : "Femmina"}</p>
@@ -22,6 +22,7 @@ import {
     TabsTrigger
 } from "@/components/ui/tabs"
 import Image from "next/image";
+import { postImageUrl } from "@/lib/utils";
 import { useAuth } from "@/context/AuthContext";
 
 interface UserProfile {
@@ -45,7 +46,8 @@ interface AdoptionPostDetailDto {
     ownerId: number
     active: boolean
     adopterId: number | null
-    imageBase64: string
+    imageKey: string | null
+    imagePlaceholder?: string | null
 }
 
 interface AdoptionPostSavedSearchDto {
@@ -265,7 +267,9 @@ export default function UserPage() {
 
                                 <div className="relative w-[95%] h-48 overflow-hidden rounded-md mx-auto">
                                     <Image
-                                        src={post.imageBase64 ? `data:image/jpeg;base64,${post.imageBase64}` : "/no_content.jpg"}
+                                        src={postImageUrl(post.imageKey, undefined, "medium")}
+                                        placeholder={post.imagePlaceholder ? "blur" : "empty"}
+                                        blurDataURL={post.imagePlaceholder ?? undefined}
                                         alt={`Immagine di ${post.name}`}
                                         fill
                                         className="object-cover"
@@ -1,5 +1,6 @@
 import { X } from "lucide-react"
 import Image from "next/image"
+import { postImageUrl } from "@/lib/utils"
 import { useEffect, useState } from "react"
 import { Avatar, AvatarImage, AvatarFallback } from "@/components/ui/avatar"
 import { useRouter } from "next/navigation"
@@ -18,7 +19,7 @@ interface ExpandedAdoptionCardProps {
         publicationDate: string
         location: string
         ownerName?: string
-        imageBase64: string
+        imageKey: string | null
     }
     onClose: () => void
 }
@@ -104,11 +105,7 @@ export default function ExpandedAdoptionCard({ post, onClose }: ExpandedAdoption
                 {/* Immagine animale */}
                 <div className="relative w-full h-72 sm:h-80 md:h-96 overflow-hidden">
                     <Image
-                        src={
-                            post.imageBase64
-                                ? `data:image/jpeg;base64,${post.imageBase64}`
-                                : "no_content.jpg"
-                        }
+                        src={postImageUrl(post.imageKey, "no_content.jpg")}
                         alt="Immagine animale"
                         fill
                         className="object-cover"
@@ -30,8 +30,13 @@ interface Filters {
     location?: string[]
     minAge?: string
     maxAge?: string
+    query?: string
+    near?: string
+    radiusKm?: string
 }
 
+type FacetCounts = Record<string, Record<string, number>>
+
 interface SearchFiltersProps {
     onSearchAction: (filters: Filters) => void
     onSaveSearch: () => void
@@ -47,6 +52,10 @@ export default function SearchFilters({ onSearchAction, onSaveSearch, canSaveSea
     const [location, setLocation] = useState<Option[]>([])
     const [minAge, setMinAge] = useState<string>("")
     const [maxAge, setMaxAge] = useState<string>("")
+    const [query, setQuery] = useState<string>("")
+    const [near, setNear] = useState<Option | null>(null)
+    const [radiusKm, setRadiusKm] = useState<string>("")
+    const [facets, setFacets] = useState<FacetCounts>({})
 
     const speciesOptions: Option[] = [
         { value: "Cane", label: "Cane" },
@@ -83,6 +92,38 @@ export default function SearchFilters({ onSearchAction, onSaveSearch, canSaveSea
         }
     }, [species])
 
+    // Number of active posts each option would yield, given the other selected filters
+    useEffect(() => {
+        const params = new URLSearchParams()
+        species.forEach(s => params.append("species", s.value))
+        breed.forEach(b => params.append("breed", b.value))
+        if (gender) params.append("gender", gender.value)
+        color.forEach(c => params.append("color", c.value))
+        location.forEach(l => params.append("location", l.value))
+        if (minAge) params.append("minAge", minAge)
+        if (maxAge) params.append("maxAge", maxAge)
+        if (query.trim()) params.append("query", query.trim())
+        if (near && radiusKm) {
+            params.append("near", near.value)
+            params.append("radiusKm", radiusKm)
+        }
+        params.append("activeOnly", "True")
+
+        const controller = new AbortController()
+        fetch(`http://localhost:8090/adoption/get/facets?${params.toString()}`, { signal: controller.signal })
+            .then(res => res.ok ? res.json() : null)
+            .then(data => { if (data) setFacets(data.facets) })
+            .catch(() => { /* counts are optional */ })
+        return () => controller.abort()
+    }, [species, breed, gender, color, location, minAge, maxAge, query, near, radiusKm])
+
+    // Shows the count only in the dropdown menu, not on the selected values
+    const withCount = (facet: string) => (option: unknown, meta: { context: "menu" | "value" }) => {
+        const { label, value } = option as Option
+        if (meta.context !== "menu" || !facets[facet]) return label
+        return `${label} (${facets[facet][value] ?? 0})`
+    }
+
     const handleSearchClick = () => {
         onSearchAction({
             species: species.map(s => s.value),
@@ -91,7 +132,10 @@ export default function SearchFilters({ onSearchAction, onSaveSearch, canSaveSea
             color: color.map(c => c.value),
             location: location.map(l => l.value),
             minAge,
-            maxAge
+            maxAge,
+            query: query.trim() || undefined,
+            near: near ? near.value : undefined,
+            radiusKm: near && radiusKm ? radiusKm : undefined
         })
     }
 
@@ -103,17 +147,28 @@ export default function SearchFilters({ onSearchAction, onSaveSearch, canSaveSea
         setLocation([])
         setMinAge("")
         setMaxAge("")
+        setQuery("")
+        setNear(null)
+        setRadiusKm("")
     }
 
     return (
         <>
             <div className="grid grid-cols-1 md:grid-cols-3 lg:grid-cols-4 gap-4 w-full max-w-6xl">
+                <Input
+                    className="md:col-span-3 lg:col-span-4"
+                    placeholder="Cerca per nome o descrizione (es. cane tranquillo per appartamento)"
+                    value={query}
+                    onChange={(e) => setQuery(e.target.value)}
+                    onKeyDown={(e) => { if (e.key === "Enter") handleSearchClick() }}
+                />
                 <Select
                     isMulti
                     placeholder="Specie"
                     value={species}
                     onChange={(val) => setSpecies(val as Option[])}
                     options={speciesOptions}
+                    formatOptionLabel={withCount("species")}
                 />
                 <Select
                     isMulti
@@ -122,12 +177,14 @@ export default function SearchFilters({ onSearchAction, onSaveSearch, canSaveSea
                     value={breed}
                     onChange={(val) => setBreed(val as Option[])}
                     options={breeds}
+                    formatOptionLabel={withCount("breed")}
                 />
                 <Select
                     placeholder="Genere"
                     value={gender}
                     onChange={(val) => setGender(val as Option | null)}
                     options={genderOpts}
+                    formatOptionLabel={withCount("gender")}
                     isClearable
                 />
                 <Select
@@ -136,6 +193,7 @@ export default function SearchFilters({ onSearchAction, onSaveSearch, canSaveSea
                     value={color}
                     onChange={(val) => setColor(val as Option[])}
                     options={colorOpts}
+                    formatOptionLabel={withCount("color")}
                 />
                 <Select
                     isMulti
@@ -143,6 +201,7 @@ export default function SearchFilters({ onSearchAction, onSaveSearch, canSaveSea
                     value={location}
                     onChange={(val) => setLocation(val as Option[])}
                     options={provinceOpts}
+                    formatOptionLabel={withCount("location")}
                 />
                 <Input
                     type="number"
@@ -158,6 +217,21 @@ export default function SearchFilters({ onSearchAction, onSaveSearch, canSaveSea
                     onChange={(e) => setMaxAge(e.target.value)}
                     min={0}
                 />
+                <Select
+                    placeholder="Vicino a"
+                    value={near}
+                    onChange={(val) => setNear(val as Option | null)}
+                    options={provinceOpts}
+                    isClearable
+                />
+                <Input
+                    type="number"
+                    placeholder="Entro (km)"
+                    value={radiusKm}
+                    onChange={(e) => setRadiusKm(e.target.value)}
+                    disabled={!near}
+                    min={1}
+                />
             </div>
 
             <div className="flex flex-wrap gap-4 mt-4 justify-center">
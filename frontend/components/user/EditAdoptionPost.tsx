@@ -30,6 +30,7 @@ import {
     colors,
     genderOptions
 } from "@/data/constants"
+import { postImageUrl } from "@/lib/utils"
 
 interface Props {
     post: {
@@ -42,7 +43,8 @@ interface Props {
         age: number
         color: string
         location: string
-        imageBase64?: string
+        imageKey?: string | null
+        version?: number | null
     }
     onClose: () => void
     onUpdated: () => void
@@ -58,7 +60,8 @@ export default function EditAdoptionPost({ post, onClose, onUpdated }: Props) {
         age: post.age,
         color: post.color,
         location: post.location,
-        imageBase64: post.imageBase64 || "",
+        version: post.version, // l'aggiornamento fallisce se l'annuncio è stato modificato nel frattempo
+        imageBase64: "", // solo per una nuova immagine scelta dall'utente
     })
 
     const originalSpecies = post.species
@@ -133,6 +136,10 @@ export default function EditAdoptionPost({ post, onClose, onUpdated }: Props) {
                 body: formDataToSend,
             })
 
+            if (res.status === 409) {
+                alert("L'annuncio è stato modificato nel frattempo. Ricarica la pagina e riprova.")
+                return
+            }
             if (!res.ok) throw new Error("Errore durante l'aggiornamento")
             alert("Annuncio aggiornato con successo.")
             onClose()
@@ -251,9 +258,9 @@ export default function EditAdoptionPost({ post, onClose, onUpdated }: Props) {
 
                     <div className="space-y-2">
                         <label className="block text-sm font-medium">Immagine</label>
-                        {formData.imageBase64 && (
+                        {(formData.imageBase64 || post.imageKey) && (
                             <img
-                                src={formData.imageBase64}
+                                src={formData.imageBase64 || postImageUrl(post.imageKey)}
                                 alt="Preview"
                                 className="h-32 object-cover rounded border"
                             />
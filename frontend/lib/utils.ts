@@ -4,3 +4,11 @@ import { twMerge } from "tailwind-merge"
 export function cn(...inputs: ClassValue[]) {
   return twMerge(clsx(inputs))
 }
+
+export type ImageSize = "small" | "medium" | "large"
+
+export function postImageUrl(imageKey?: string | null, fallback: string = "/no_content.jpg", size?: ImageSize) {
+  if (!imageKey) return fallback
+  const url = `http://localhost:8090/adoption/get/image/${imageKey}`
+  return size ? `${url}?size=${size}` : url
+}
@@ -15,7 +15,9 @@ import java.util.List;
 public class SavedSearch {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "saved_search_ids")
+    // pooled allocation: one call to the sequence every 50 inserts, which can be batched
+    @SequenceGenerator(name = "saved_search_ids", sequenceName = "data_seq", allocationSize = 50)
     private Long id;
 
     private Long userId;
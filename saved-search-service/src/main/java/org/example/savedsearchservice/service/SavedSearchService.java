@@ -82,6 +82,7 @@ public class SavedSearchService {
      * @param userId the ID of the user
      * @return list of saved searches in DTO format
      */
+    @Transactional(readOnly = true)
     public List<AdoptionPostSavedSearchDto> getSavedSearchesByUser(Long userId) {
         return repository.findByUserId(userId).stream()
                 .map(this::toSavedSearchDto)
@@ -0,0 +1,34 @@
+-- Schema of the saved searches as created by Hibernate before the migrations were introduced.
+-- Every statement is idempotent, so it also runs on databases baselined at version 0.
+
+create table if not exists saved_searches (
+    id bigint generated by default as identity primary key,
+    user_id bigint,
+    gender varchar(255),
+    min_age integer,
+    max_age integer
+);
+
+create table if not exists saved_search_species (
+    saved_search_id bigint not null,
+    species varchar(255),
+    constraint fk_saved_search_species_saved_search foreign key (saved_search_id) references saved_searches (id)
+);
+
+create table if not exists saved_search_breeds (
+    saved_search_id bigint not null,
+    breed varchar(255),
+    constraint fk_saved_search_breeds_saved_search foreign key (saved_search_id) references saved_searches (id)
+);
+
+create table if not exists saved_search_colors (
+    saved_search_id bigint not null,
+    color varchar(255),
+    constraint fk_saved_search_colors_saved_search foreign key (saved_search_id) references saved_searches (id)
+);
+
+create table if not exists saved_search_locations (
+    saved_search_id bigint not null,
+    location varchar(255),
+    constraint fk_saved_search_locations_saved_search foreign key (saved_search_id) references saved_searches (id)
+);
@@ -0,0 +1,19 @@
+-- Indexes matched to the queries of SavedSearchRepository.
+
+-- saved searches of a user
+create index idx_saved_searches_user_id
+    on saved_searches (user_id);
+
+-- the element collections are loaded and joined by saved search; the value is included
+-- so that matching a new post reads only the index
+create index idx_saved_search_species_saved_search_id
+    on saved_search_species (saved_search_id, species);
+
+create index idx_saved_search_breeds_saved_search_id
+    on saved_search_breeds (saved_search_id, breed);
+
+create index idx_saved_search_colors_saved_search_id
+    on saved_search_colors (saved_search_id, color);
+
+create index idx_saved_search_locations_saved_search_id
+    on saved_search_locations (saved_search_id, location);
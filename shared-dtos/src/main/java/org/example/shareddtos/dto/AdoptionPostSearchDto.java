@@ -20,4 +20,9 @@ public class AdoptionPostSearchDto {
     private List<String> color;
     private List<String> location;
     private Boolean activeOnly;
+    private String query;// free text, matched against name and description
+    private String near;// place the radius is centered on, alternative to latitude/longitude
+    private Double latitude;
+    private Double longitude;
+    private Double radiusKm;
 }
\ No newline at end of file
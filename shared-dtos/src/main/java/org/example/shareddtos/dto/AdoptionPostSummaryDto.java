@@ -1,6 +1,8 @@
 package org.example.shareddtos.dto;
 import lombok.*;
 
+import java.time.LocalDateTime;
+
 /**
  * DTO used to transfer summary information of an AdoptionPost.
  * used in list views.
@@ -12,12 +14,16 @@ import lombok.*;
 public class AdoptionPostSummaryDto {
     private Long id;
     private String name;
+    private LocalDateTime publicationDate;
     private String species;
     private String breed;
     private Integer age;// in months
     private String gender;
     private String color;
     private String location;
+    private Double distanceKm;// distance from the search center, if any
     private Boolean active;
-    private String imageBase64;
+    private String imageKey;
+    private String imagePlaceholder;
+    private Long views;// number of views, only in the owner's listing
 }
\ No newline at end of file
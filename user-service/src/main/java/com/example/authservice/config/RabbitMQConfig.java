@@ -0,0 +1,59 @@
+package com.example.authservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RabbitMQ configuration, used to broadcast second-level cache evictions between the replicas.
+ */
+@Configuration
+public class RabbitMQConfig {
+
+    @Value("${app.rabbitmq.exchange}")
+    private String exchange;
+
+    @Value("${app.rabbitmq.routingkey.cache-eviction}")
+    private String cacheEvictionRoutingKey;
+
+    @Bean
+    public DirectExchange exchange() {
+        return new DirectExchange(exchange, true, false);
+    }
+
+    // each replica gets its own exclusive queue, so cache evictions reach all of them
+    @Bean
+    public Queue cacheEvictionQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding bindingCacheEviction(Queue cacheEvictionQueue, DirectExchange exchange) {
+        return BindingBuilder.bind(cacheEvictionQueue)
+                .to(exchange)
+                .with(cacheEvictionRoutingKey);
+    }
+
+    @Bean
+    public MessageConverter messageConverter(ObjectMapper objectMapper) {
+        return new Jackson2JsonMessageConverter(objectMapper);
+    }
+
+    @Bean
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory,
+                                         MessageConverter converter) {
+        RabbitTemplate template = new RabbitTemplate(connectionFactory);
+        template.setMessageConverter(converter);
+        return template;
+    }
+}
@@ -19,7 +19,9 @@ public class Auth {
      * Primary key identifier for the auth record.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "auth_ids")
+    // pooled allocation: one call to the sequence every 50 inserts, which can be batched
+    @SequenceGenerator(name = "auth_ids", sequenceName = "data_seq", allocationSize = 50)
     private Long id;
 
     /**
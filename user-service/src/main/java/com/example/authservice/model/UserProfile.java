@@ -3,13 +3,19 @@ package com.example.authservice.model;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * Entity representing a user's profile information.
  * Linked to the Auth entity via a shared primary key (one-to-one mapping).
+ * Profiles are kept in the second-level cache (region "user-profiles" of ehcache.xml),
+ * the other replicas are notified of changes by CacheEvictionService.
  */
 @Entity
 @Table(name = "user_profile")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user-profiles")
 @Getter
 @Setter
 public class UserProfile {
@@ -24,8 +30,9 @@ public class UserProfile {
     /**
      * One-to-one relationship with the Auth entity.
      * Uses the same ID as the primary key.
+     * Lazy, so that a profile read from the cache does not load its credentials.
      */
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @MapsId
     @JoinColumn(name = "id")
     private Auth auth;
@@ -63,20 +63,23 @@ public class AuthService {
 
     /**
      * Finds an Auth entity by email.
+     * Credentials are always read from the primary (not read-only), so users can log in right after registering.
      *
      * @param email the email to look up
      * @return an Optional containing the Auth entity if found
      */
+    @Transactional
     public Optional<Auth> findByEmail(String email) {
         return authRepository.findByEmail(email);
     }
 
     /**
-     * Finds an Auth entity by ID.
+     * Finds an Auth entity by ID, reading it from the primary like {@link #findByEmail(String)}.
      *
      * @param id the user ID
      * @return an Optional containing the Auth entity if found
      */
+    @Transactional
     public Optional<Auth> findById(Long id) {
         return authRepository.findById(id);
     }
@@ -0,0 +1,136 @@
+package com.example.authservice.service;
+
+import com.example.authservice.config.ReplicationLagGuard;
+import com.example.authservice.dto.CacheEvictionMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Keeps the second-level caches of the replicas consistent.
+ * The second-level cache is local to each replica: when a cached entity changes, Hibernate updates the cache
+ * of this replica, and once the transaction has committed this service tells the other replicas to evict it,
+ * together with the cached query results (which may include it).
+ * When reads go to a database replica, evictions are repeated once it has caught up, since a read from
+ * the lagging replica may have cached the old state again.
+ */
+@Component
+public class CacheEvictionService implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+
+    @Value("${app.rabbitmq.exchange}")
+    private String exchange;
+
+    @Value("${app.rabbitmq.routingkey.cache-eviction}")
+    private String cacheEvictionRoutingKey;
+
+    // identifies this replica, so it can skip its own changes
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final SessionFactoryImplementor sessionFactory;
+
+    private final RabbitTemplate rabbitTemplate;
+
+    private final ObjectProvider<ReplicationLagGuard> replicationLagGuard;
+
+    public CacheEvictionService(EntityManagerFactory entityManagerFactory, RabbitTemplate rabbitTemplate,
+                                ObjectProvider<ReplicationLagGuard> replicationLagGuard) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.rabbitTemplate = rabbitTemplate;
+        this.replicationLagGuard = replicationLagGuard;
+    }
+
+    @PostConstruct
+    void registerListeners() {
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        broadcast(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        broadcast(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        broadcast(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // rolled back: nothing changed
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // rolled back: nothing changed
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // rolled back: nothing changed
+    }
+
+    // called only for the entities kept in the second-level cache
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return persister.canWriteToCache();
+    }
+
+    /**
+     * Handles a change made by a replica, evicting the entity and the cached query results.
+     *
+     * @param message the change
+     */
+    @RabbitListener(queues = "#{cacheEvictionQueue.name}")
+    public void handleCacheEviction(CacheEvictionMessage message) {
+        if (!instanceId.equals(message.origin())) {
+            evict(message.entity(), message.id());
+            replicationLagGuard.ifAvailable(guard -> guard.afterLag(() -> evict(message.entity(), message.id())));
+        }
+    }
+
+    private void evict(String entity, Long id) {
+        Cache cache = sessionFactory.getCache();
+        cache.evictEntityData(entity, id);
+        cache.evictQueryRegions();
+    }
+
+    private void broadcast(EntityPersister persister, Object id) {
+        // the entity cached here is up to date, but query results may be cached again from the lagging replica
+        replicationLagGuard.ifAvailable(guard -> guard.afterLag(() -> evict(persister.getEntityName(), (Long) id)));
+        try {
+            rabbitTemplate.convertAndSend(exchange, cacheEvictionRoutingKey,
+                    new CacheEvictionMessage(instanceId, persister.getEntityName(), (Long) id));
+        } catch (AmqpException e) {
+            // the other replicas keep the entry until it expires
+            System.out.println("Errore nell'invio dell'invalidazione della cache per " + persister.getEntityName()
+                    + " " + id + ": " + e.getMessage());
+        }
+    }
+}
@@ -58,6 +58,7 @@ public class ProfileService {
      * @return a UserProfileDTO containing the user's profile data
      * @throws NoSuchElementException if the user is not found
      */
+    @Transactional(readOnly = true)
     public UserProfileDTO getUserById(Long userId) {
         UserProfile profile = repository.findById(userId)
                 .orElseThrow(() -> new NoSuchElementException("Not found " + userId));
@@ -76,6 +77,7 @@ public class ProfileService {
      * @return an EmailResponseDto containing the user's email, name, and surname
      * @throws NoSuchElementException if the user is not found
      */
+    @Transactional(readOnly = true)
     public EmailResponseDto getEmailById(Long userId) {
         UserProfile profile = repository.findById(userId)
                 .orElseThrow(() -> new NoSuchElementException("Not found " + userId));
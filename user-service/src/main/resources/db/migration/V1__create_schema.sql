@@ -0,0 +1,19 @@
+-- Schema of the users as created by Hibernate before the migrations were introduced.
+-- Every statement is idempotent, so it also runs on databases baselined at version 0.
+-- Lookups by email use the indexes of the unique constraints.
+
+create table if not exists auth (
+    id bigint generated by default as identity primary key,
+    email varchar(255) not null unique,
+    password varchar(255) not null,
+    provider varchar(255) not null
+);
+
+create table if not exists user_profile (
+    id bigint not null primary key,
+    email varchar(255) not null unique,
+    name varchar(255) not null,
+    surname varchar(255) not null,
+    profile_picture text,
+    constraint fk_user_profile_auth foreign key (id) references auth (id)
+);
@@ -0,0 +1,148 @@
+package com.example.authservice;
+
+import com.example.authservice.repository.AuthRepository;
+import com.example.authservice.repository.UserProfileRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the repository queries are served by the indexes created by the migrations.
+ * Each repository method is run on an empty schema, and the SQL it executes is explained (generic plan,
+ * sequential scans disabled): the plan must not scan a table and must use the expected index.
+ * Skipped when Docker is not available.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.authservice.QueryIndexUsageTests$RecordingInspector")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class QueryIndexUsageTests {
+
+    private static final Pattern UNTYPED_PARAMETER = Pattern.compile("could not determine data type of parameter \\$(\\d+)");
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17-alpine");
+
+    /**
+     * Records the SQL executed by Hibernate.
+     */
+    public static class RecordingInspector implements StatementInspector {
+
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+
+    @Autowired
+    private AuthRepository authRepository;
+
+    @Autowired
+    private UserProfileRepository profileRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void loginUsesEmailIndex() throws Exception {
+        assertUsesIndex("auth_email_key", () -> authRepository.findByEmail("utente@example.com"));
+    }
+
+    @Test
+    void lookupsByIdUsePrimaryKeys() throws Exception {
+        assertUsesIndex("auth_pkey", () -> authRepository.findById(1L));
+        assertUsesIndex("user_profile_pkey", () -> profileRepository.findById(1L));
+    }
+
+    /**
+     * Runs a repository call and checks the plans of the statements it executes.
+     *
+     * @param index index that every statement must use
+     * @param call  the repository call
+     */
+    private void assertUsesIndex(String index, Runnable call) throws Exception {
+        RecordingInspector.statements.clear();
+        call.run();
+        assertThat(RecordingInspector.statements).isNotEmpty();
+        for (String sql : RecordingInspector.statements) {
+            String plan = explain(sql);
+            assertThat(plan).as(sql).doesNotContain("Seq Scan").contains(index);
+        }
+    }
+
+    private String explain(String sql) throws Exception {
+        // the statement is prepared with $n parameters and explained with a generic plan, which does not
+        // depend on the values (explain (generic_plan) cannot be sent by the driver, which would bind them)
+        StringBuilder numbered = new StringBuilder();
+        int parameter = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                numbered.append('$').append(++parameter);
+            } else {
+                numbered.append(c);
+            }
+        }
+        StringBuilder plan = new StringBuilder();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("set enable_seqscan = off");
+            statement.execute("set plan_cache_mode = force_generic_plan");
+            prepare(statement, numbered.toString(), parameter);
+            String arguments = parameter > 0 ? "(" + String.join(", ", Collections.nCopies(parameter, "null")) + ")" : "";
+            try (ResultSet rows = statement.executeQuery("explain execute explained" + arguments)) {
+                while (rows.next()) {
+                    plan.append(rows.getString(1)).append('\n');
+                }
+            }
+            statement.execute("deallocate explained");
+            statement.execute("reset plan_cache_mode");
+            statement.execute("reset enable_seqscan");
+        }
+        return plan.toString();
+    }
+
+    /**
+     * Prepares a statement as "explained". Parameters whose type the server cannot infer (such as in
+     * "? is null") are declared as text, which is how the driver binds strings.
+     */
+    private static void prepare(Statement statement, String sql, int parameters) throws SQLException {
+        String[] types = new String[parameters];
+        Arrays.fill(types, "unknown");
+        while (true) {
+            try {
+                statement.execute("prepare explained" + (parameters > 0 ? "(" + String.join(", ", types) + ")" : "")
+                        + " as " + sql);
+                return;
+            } catch (SQLException e) {
+                Matcher untyped = UNTYPED_PARAMETER.matcher(String.valueOf(e.getMessage()));
+                if (!untyped.find() || !types[Integer.parseInt(untyped.group(1)) - 1].equals("unknown")) {
+                    throw e;
+                }
+                types[Integer.parseInt(untyped.group(1)) - 1] = "text";
+            }
+        }
+    }
+}